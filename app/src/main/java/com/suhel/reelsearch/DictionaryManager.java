@@ -24,77 +24,228 @@
 
 package com.suhel.reelsearch;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
 import com.suhel.reelsearch.utils.RxUtils;
+import com.suhel.search.ExternalIndexBuilder;
+import com.suhel.search.SearchEngine;
+import com.suhel.search.TextNormalizer;
+import com.suhel.search.metrics.PipelineMetrics;
+import com.suhel.search.metrics.PipelineStage;
 import io.reactivex.Completable;
-import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Binds the {@link SearchEngine} to the bundled word list and exposes it
+ * through Rx types scheduled according to {@link RxUtils}.
+ * <p>
+ * Listens for memory pressure and sheds the secondary tiers of the engine,
+ * keeping only the core index, until {@link #release()} is called.
+ * <p>
+ * After every query the likeliest next keystrokes are precomputed on the
+ * speculation lane of the {@link com.suhel.reelsearch.utils.SchedulerPolicy},
+ * abandoned as soon as the next real query arrives
+ */
+public class DictionaryManager implements ComponentCallbacks2 {
+
+    private static final String TAG = "DictionaryManager";
+
+    /**
+     * Index files in the cache dir are named after the version of the app which built them
+     */
+    private static final String INDEX_FILE_PREFIX = "words-";
+    private static final String INDEX_FILE_SUFFIX = ".idx";
+
+    /**
+     * Number of next keystrokes precomputed after every query
+     */
+    private static final int SPECULATION_BUDGET = 3;
+
+    /**
+     * Accented words are found without typing the accents
+     */
+    private final SearchEngine mEngine = new SearchEngine(TextNormalizer.CASE_AND_DIACRITIC_FOLDING);
 
-public class DictionaryManager {
+    /**
+     * Stores the pending speculation, swapped atomically as queries on the
+     * query lane race each other and the main thread cancelling it
+     */
+    private final AtomicReference<Disposable> mSpeculation = new AtomicReference<>();
 
-    private final List<String> mWords = new ArrayList<>();
-    private volatile boolean mIsLoaded = false;
     private Context mContext;
+    private volatile boolean mSpeculativeEnabled = true;
 
     public DictionaryManager(@NonNull Context context) {
         mContext = context;
+        mContext.getApplicationContext().registerComponentCallbacks(this);
+        // Multi word queries scan the words until the phrase index is built off the query lane
+        mEngine.setPhraseIndexExecutor(command -> RxUtils.getSchedulerPolicy().io().scheduleDirect(command));
     }
 
-    private void clearWords() {
-        synchronized (mWords) {
-            mWords.clear();
+    /**
+     * Stops listening for memory pressure. Call once the owner is destroyed
+     */
+    public void release() {
+        mContext.getApplicationContext().unregisterComponentCallbacks(this);
+        cancelSpeculation();
+    }
+
+    /**
+     * @param enabled Whether the likeliest next keystrokes are precomputed after every query
+     */
+    public void setSpeculativeEnabled(boolean enabled) {
+        mSpeculativeEnabled = enabled;
+
+        if (!enabled) {
+            cancelSpeculation();
         }
     }
 
-    private void addWord(@NonNull String word) {
-        synchronized (mWords) {
-            mWords.add(word);
+    /**
+     * @return Approximate heap footprint of each tier of the engine by name
+     */
+    public Map<String, Long> getFootprint() {
+        return mEngine.getFootprint();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // Running moderate still leaves room, anything beyond it means
+        // the process is next in line for the low memory killer
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mEngine.trimMemory();
         }
     }
 
+    @Override
+    public void onLowMemory() {
+        mEngine.trimMemory();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+
+    }
+
     public boolean isLoaded() {
-        return mIsLoaded;
+        return mEngine.isLoaded();
     }
 
+    /**
+     * Loads the index file prepared in the cache dir, building it first with a
+     * fixed amount of heap if this version of the app has not built it yet
+     */
     public Completable loadDictionary() {
         return Completable.fromRunnable(() -> {
 
-            BufferedReader br = new BufferedReader(
-                    new InputStreamReader(mContext.getResources().openRawResource(R.raw.words)));
-
-            String word;
+            final File index = new File(mContext.getCacheDir(),
+                    INDEX_FILE_PREFIX + BuildConfig.VERSION_CODE + INDEX_FILE_SUFFIX);
 
             try {
-
-                clearWords();
-
-                while ((word = br.readLine()) != null) {
-                    addWord(word.toLowerCase());
+                if (!index.exists()) {
+                    deleteStaleIndexes();
+                    final ExternalIndexBuilder.Result result = new ExternalIndexBuilder.Builder()
+                            .setNormalizer(mEngine.getNormalizer())
+                            .setTempDir(mContext.getCacheDir())
+                            .build()
+                            .build(mContext.getResources().openRawResource(R.raw.words), index);
+                    Log.d(TAG, result.toString());
                 }
 
+                mEngine.loadIndex(new FileInputStream(index));
             } catch (Exception e) {
                 e.printStackTrace();
-            }
+                // Rebuilt on the next launch, the word list is still usable meanwhile
+                index.delete();
 
-            mIsLoaded = true;
+                try {
+                    mEngine.load(mContext.getResources().openRawResource(R.raw.words));
+                } catch (Exception fallback) {
+                    fallback.printStackTrace();
+                }
+            }
 
         }).compose(RxUtils.composeCompletable());
     }
 
-    public Single<List<String>> query(@NonNull String startsWith) {
-        if (!mIsLoaded || startsWith.isEmpty()) {
+    /**
+     * Deletes the index files built by earlier versions of the app
+     */
+    private void deleteStaleIndexes() {
+        final File[] files = mContext.getCacheDir().listFiles((dir, name) ->
+                name.startsWith(INDEX_FILE_PREFIX) && name.endsWith(INDEX_FILE_SUFFIX));
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @param startsWith The prefix typed
+     * @param prepare    Runs on the results on the query lane before they are
+     *                   delivered to the main thread, such as laying out their text
+     */
+    public Single<List<String>> query(@NonNull String startsWith, @Nullable Consumer<List<String>> prepare) {
+        if (!mEngine.isLoaded() || startsWith.isEmpty()) {
+            PipelineMetrics.getInstance().end(PipelineStage.KEYSTROKE_TO_QUERY);
             return Single.just(new ArrayList<>());
         } else {
-            return Observable.fromIterable(mWords)
-                    .filter(in -> in.startsWith(startsWith))
-                    .toList()
-                    .compose(RxUtils.composeSingle());
+            return Single.fromCallable(() -> {
+                final PipelineMetrics metrics = PipelineMetrics.getInstance();
+                metrics.end(PipelineStage.KEYSTROKE_TO_QUERY);
+
+                final long start = metrics.now();
+                final List<String> result = mEngine.query(startsWith);
+                metrics.recordSince(PipelineStage.QUERY_EXECUTION, start);
+
+                if (mSpeculativeEnabled) {
+                    speculate(startsWith, mEngine.getQueryGeneration());
+                }
+
+                if (prepare != null) {
+                    prepare.accept(result);
+                }
+
+                metrics.begin(PipelineStage.RESULT_DELIVERY);
+                return result;
+            }).compose(RxUtils.composeQuerySingle());
+        }
+    }
+
+    /**
+     * Precomputes the likeliest next keystrokes after the given prefix in
+     * the background, replacing any speculation still pending
+     */
+    private void speculate(@NonNull String startsWith, long generation) {
+        final Disposable speculation = Completable.fromRunnable(() -> mEngine.speculate(startsWith, SPECULATION_BUDGET, generation))
+                .subscribeOn(RxUtils.getSchedulerPolicy().speculation())
+                .onErrorComplete()
+                .subscribe();
+        dispose(mSpeculation.getAndSet(speculation));
+    }
+
+    private void cancelSpeculation() {
+        dispose(mSpeculation.getAndSet(null));
+    }
+
+    private static void dispose(@Nullable Disposable disposable) {
+        if (disposable != null) {
+            disposable.dispose();
         }
     }
 
@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.reelsearch;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LongSparseArray;
+import com.suhel.library.PagedResults;
+import com.suhel.library.SuggestionSource;
+import com.suhel.reelsearch.utils.RxUtils;
+import com.suhel.search.metrics.PipelineMetrics;
+import com.suhel.search.metrics.PipelineStage;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapts the {@link DictionaryManager} to the {@link SuggestionSource} of the
+ * {@link com.suhel.library.ReelSearchView}. Results are views over the index and
+ * cost nothing to hand over, so each query is delivered as a single batch.
+ * <p>
+ * Result sets too large to be worth handing over whole are delivered as
+ * {@link PagedResults}, copied out a page at a time on the query lane as the
+ * reel reaches them, the way a result set on disk or behind a query service
+ * would be fetched
+ */
+public class DictionarySuggestionSource implements SuggestionSource<String> {
+
+    /**
+     * Result sets larger than this are paged
+     */
+    private static final int PAGED_RESULTS_THRESHOLD = 1000;
+
+    /**
+     * Number of leading rows of a result set prepared before it is delivered,
+     * a screenful with a few to spare
+     */
+    private static final int PREPARED_ROWS = 24;
+
+    @NonNull
+    private final DictionaryManager mDictionaryManager;
+
+    /**
+     * Runs on the leading rows of the results and on each page on the query lane
+     * before delivering them, such as laying out their text
+     */
+    @Nullable
+    private final Consumer<List<String>> mPrepare;
+
+    /**
+     * Stores the running queries by request id. Main thread only
+     */
+    private final LongSparseArray<Disposable> mRequests = new LongSparseArray<>();
+
+    /**
+     * @param dictionaryManager The dictionary to query
+     * @param prepare           Runs on the leading rows and on each page on the query lane
+     *                          before delivering them, may be null
+     */
+    public DictionarySuggestionSource(@NonNull DictionaryManager dictionaryManager,
+                                      @Nullable Consumer<List<String>> prepare) {
+        mDictionaryManager = dictionaryManager;
+        mPrepare = prepare;
+    }
+
+    @Override
+    public void query(long requestId, @NonNull String query, @NonNull Callback<String> callback) {
+        final Disposable request = mDictionaryManager.query(query, this::prepare)
+                .doOnSuccess(in -> PipelineMetrics.getInstance().end(PipelineStage.RESULT_DELIVERY))
+                .map(in -> in.size() > PAGED_RESULTS_THRESHOLD ? page(in) : in)
+                .subscribe(in -> {
+                    mRequests.remove(requestId);
+                    callback.onResults(requestId, in, true);
+                }, e -> {
+                    mRequests.remove(requestId);
+                    callback.onError(requestId, e);
+                });
+
+        // Queries which cannot match complete right away
+        if (!request.isDisposed()) {
+            mRequests.put(requestId, request);
+        }
+    }
+
+    /**
+     * Runs on the query lane right after the query, so that the results reach the
+     * main thread once. Paged results are laid out a page at a time as they load instead
+     *
+     * @param results The whole result set
+     */
+    private void prepare(@NonNull List<String> results) throws Exception {
+        if (mPrepare != null && results.size() <= PAGED_RESULTS_THRESHOLD) {
+            mPrepare.accept(results.subList(0, Math.min(results.size(), PREPARED_ROWS)));
+        }
+    }
+
+    /**
+     * @param results The whole result set
+     * @return The result set loaded a page at a time on the query lane, each page
+     * prepared there too so that its rows are ready when they are rebound
+     */
+    @NonNull
+    private List<String> page(@NonNull List<String> results) {
+        final Executor executor = RxUtils.getSchedulerPolicy().query()::scheduleDirect;
+
+        return new PagedResults.Builder<String>((offset, count) -> {
+            final List<String> page = new ArrayList<>(results.subList(offset, Math.min(results.size(), offset + count)));
+
+            if (mPrepare != null) {
+                mPrepare.accept(page);
+            }
+
+            return page;
+        }, results.size(), executor)
+                .build();
+    }
+
+    @Override
+    public void cancel(long requestId) {
+        final Disposable request = mRequests.get(requestId);
+
+        if (request != null) {
+            mRequests.remove(requestId);
+            request.dispose();
+        }
+    }
+
+}
@@ -29,14 +29,28 @@ import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
 import android.text.InputFilter;
+import android.text.Spanned;
+import android.text.TextWatcher;
 import android.util.Log;
 import com.suhel.reelsearch.databinding.ActivitySuggestionsBinding;
-import com.suhel.reelsearch.utils.RxUtils;
+import com.suhel.search.metrics.PipelineMetrics;
+import com.suhel.search.metrics.PipelineStage;
 import io.reactivex.disposables.CompositeDisposable;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Map;
+
 public class SuggestionsActivity extends AppCompatActivity {
 
+    /**
+     * Number of suggestion rows inflated ahead of the first result,
+     * enough to fill a tall screen with a few spare for scrolling
+     */
+    private static final int PREWARM_HOLDER_COUNT = 16;
+
     private ActivitySuggestionsBinding mBinding;
     private CompositeDisposable mDisposable = new CompositeDisposable();
     private DictionaryManager mDictionaryManager;
@@ -46,9 +60,16 @@ public class SuggestionsActivity extends AppCompatActivity {
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         mBinding = DataBindingUtil.setContentView(this, R.layout.activity_suggestions);
+        PipelineMetrics.getInstance().setEnabled(BuildConfig.DEBUG);
         mDictionaryManager = new DictionaryManager(this);
         mAdapter = new SuggestionsAdapter(this);
-        mBinding.lstSuggestions.setAdapter(mAdapter);
+        mBinding.reelSearch.setSuggestionSource(
+                new DictionarySuggestionSource(mDictionaryManager, mAdapter::precomputeText), mAdapter);
+        mBinding.reelSearch.setOnSuggestionsUpdatedListener((query, count, isComplete) -> {
+            PipelineMetrics.getInstance().begin(PipelineStage.FIRST_FRAME);
+            mBinding.btnSelect.setEnabled(count > 0);
+        });
+        mBinding.reelSearch.prewarmViewHolders(0, PREWARM_HOLDER_COUNT);
         mBinding.btnSelect.setOnClickListener(v -> {
             final int selectedPosition = mBinding.reelSearch.getLayoutManager().getSelection();
 
@@ -57,11 +78,27 @@ public class SuggestionsActivity extends AppCompatActivity {
                     Snackbar.LENGTH_SHORT).show();
         });
         mBinding.txtQuery.setFilters(new InputFilter[]{
-                (source, start, end, dest, dstart, dend) -> source.toString().toLowerCase().trim()
+                (source, start, end, dest, dstart, dend) -> filterQuery(source, start, end, dest, dstart)
+        });
+        mBinding.txtQuery.addTextChangedListener(new KeystrokeMetricsWatcher());
+        mBinding.reelSearch.setOnQueryListener((query, isSent) -> {
+            // Nothing reaches the dictionary to close the stage, which would
+            // otherwise time the next burst from this keystroke
+            if (!isSent) {
+                PipelineMetrics.getInstance().cancel(PipelineStage.KEYSTROKE_TO_QUERY);
+            }
         });
         mBinding.reelSearch.setOnSelectionChangedListener((prevSelection, newSelection) -> {
             Log.e("Selection", "Changed to " + newSelection + " from " + prevSelection);
         });
+        if (BuildConfig.DEBUG) {
+            mBinding.reelSearch.setOnJankFrameListener(report ->
+                    Log.w("Jank", "Frame took " + report.getFrameNanos() / 1000 + "us, mostly "
+                            + report.getSlowestPhase() + " for "
+                            + report.getPhaseNanos(report.getSlowestPhase()) / 1000 + "us"));
+        }
+        mBinding.lstSuggestions.getViewTreeObserver().addOnDrawListener(() ->
+                PipelineMetrics.getInstance().end(PipelineStage.FIRST_FRAME));
     }
 
     @Override
@@ -75,22 +112,101 @@ public class SuggestionsActivity extends AppCompatActivity {
                 .doOnComplete(() -> {
                     mBinding.txtQuery.setEnabled(true);
                     mBinding.txtQuery.setHint("Start typing");
+                    mBinding.reelSearch.refreshSuggestions();
                 })
                 .subscribe(() -> {
                 }, Throwable::printStackTrace));
+    }
+
+    /**
+     * Adds the pipeline metrics to {@code adb shell dumpsys activity}
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        PipelineMetrics.getInstance().dump(prefix, writer);
 
-        mDisposable.add(RxUtils.onTextChange(mBinding.txtQuery)
-                .filter(in -> mDictionaryManager.isLoaded())
-                .concatMapSingle(in -> mDictionaryManager.query(in))
-                .doOnNext(in -> mBinding.btnSelect.setEnabled(!in.isEmpty()))
-                .subscribe(mAdapter::setData, Throwable::printStackTrace));
+        writer.print(prefix);
+        writer.println("Dictionary footprint");
+
+        for (Map.Entry<String, Long> tier : mDictionaryManager.getFootprint().entrySet()) {
+            writer.print(prefix);
+            writer.println("  " + tier.getKey() + ": " + tier.getValue() / 1024 + " KB");
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mDictionaryManager.release();
         mDisposable.dispose();
         mDisposable.clear();
     }
 
+    /**
+     * Lowercases typed text and keeps single spaces between tokens, so that
+     * multi word queries can be typed while leading and repeated spaces are dropped.
+     * Text needing no change, which is most keystrokes, is accepted without a copy
+     */
+    private static CharSequence filterQuery(CharSequence source, int start, int end, Spanned dest, int dstart) {
+        final boolean startsAfterSpace = dstart == 0 || Character.isWhitespace(dest.charAt(dstart - 1));
+        boolean afterSpace = startsAfterSpace;
+        boolean unchanged = true;
+
+        for (int i = start; i < end && unchanged; i++) {
+            final char c = source.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                unchanged = !afterSpace && c == ' ';
+                afterSpace = true;
+            } else {
+                unchanged = Character.toLowerCase(c) == c;
+                afterSpace = false;
+            }
+        }
+
+        if (unchanged) {
+            return null;
+        }
+
+        final StringBuilder filtered = new StringBuilder(end - start);
+        afterSpace = startsAfterSpace;
+
+        for (int i = start; i < end; i++) {
+            final char c = source.charAt(i);
+
+            if (!Character.isWhitespace(c)) {
+                filtered.append(Character.toLowerCase(c));
+                afterSpace = false;
+            } else if (!afterSpace) {
+                filtered.append(' ');
+                afterSpace = true;
+            }
+        }
+
+        return filtered;
+    }
+
+    /**
+     * Starts timing {@link PipelineStage#KEYSTROKE_TO_QUERY} on the first keystroke of a burst
+     */
+    private static class KeystrokeMetricsWatcher implements TextWatcher {
+
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+            PipelineMetrics.getInstance().beginIfIdle(PipelineStage.KEYSTROKE_TO_QUERY);
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+
+        }
+
+    }
+
 }
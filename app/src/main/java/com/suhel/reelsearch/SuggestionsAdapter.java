@@ -26,46 +26,149 @@ package com.suhel.reelsearch;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v4.util.LruCache;
+import android.support.v4.widget.TextViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
+import com.suhel.library.PagedResults;
+import com.suhel.library.ReelSearchAdapter;
 import com.suhel.reelsearch.databinding.ItemSuggestionBinding;
+import com.suhel.reelsearch.utils.RxUtils;
+import com.suhel.search.metrics.PipelineMetrics;
+import com.suhel.search.metrics.PipelineStage;
+import io.reactivex.Completable;
 
 import java.util.List;
 
-public class SuggestionsAdapter extends RecyclerView.Adapter<SuggestionsAdapter.SuggestionViewHolder> {
+public class SuggestionsAdapter extends ReelSearchAdapter<String, SuggestionsAdapter.SuggestionViewHolder> {
+
+    /**
+     * Number of rows laid out ahead of time when a new result set arrives
+     * and ahead of the bound position while scrolling
+     */
+    private static final int PRECOMPUTE_WINDOW = 24;
+
+    /**
+     * Number of laid out texts kept around across result sets
+     */
+    private static final int TEXT_CACHE_SIZE = 256;
 
     @NonNull
     private LayoutInflater inflater;
-    private List<String> data;
+
+    /**
+     * Laid out texts keyed by suggestion, filled from a background thread
+     */
+    private final LruCache<String, PrecomputedTextCompat> textCache = new LruCache<>(TEXT_CACHE_SIZE);
+
+    /**
+     * Text metrics of the suggestion row, captured from the first holder
+     * created. Read by the background precomputation hence volatile
+     */
+    @Nullable
+    private volatile PrecomputedTextCompat.Params textParams;
+
+    /**
+     * Highest position for which text has been scheduled for precomputation
+     * in the current result set
+     */
+    private int precomputedUpTo;
 
     public SuggestionsAdapter(@NonNull Context context) {
         inflater = LayoutInflater.from(context);
     }
 
-    public void setData(List<String> data) {
-        this.data = data;
-        notifyDataSetChanged();
+    /**
+     * Lays out the text of rows about to be shown, such as the leading rows of a result
+     * set or a page of {@link PagedResults}, so that the frame showing them does not
+     * measure text. Call it on a background thread
+     *
+     * @param data The rows to lay out
+     */
+    public void precomputeText(@NonNull List<String> data) {
+        precompute(data, 0, data.size());
     }
 
-    public String getItem(int position) {
-        return data.get(position);
+    @Override
+    protected void onItemsReplaced(@NonNull List<String> items) {
+        precomputedUpTo = Math.min(items.size(), PRECOMPUTE_WINDOW);
     }
 
     @NonNull
     @Override
     public SuggestionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        return new SuggestionViewHolder(ItemSuggestionBinding.inflate(inflater, parent, false));
+        final ItemSuggestionBinding binding = ItemSuggestionBinding.inflate(inflater, parent, false);
+
+        if (textParams == null) {
+            textParams = TextViewCompat.getTextMetricsParams(binding.tvSuggestion);
+        }
+
+        return new SuggestionViewHolder(binding);
     }
 
     @Override
     public void onBindViewHolder(@NonNull SuggestionViewHolder holder, int position) {
+        final PipelineMetrics metrics = PipelineMetrics.getInstance();
+        final long start = metrics.now();
         holder.bind(getItem(position));
+        metrics.recordSince(PipelineStage.ADAPTER_BIND, start);
+        schedulePrecompute(position);
     }
 
-    @Override
-    public int getItemCount() {
-        return data != null ? data.size() : 0;
+    /**
+     * Keeps the text of the rows ahead of the bound position laid out
+     * in the background so flings find them in the cache
+     *
+     * @param position The position being bound
+     */
+    private void schedulePrecompute(int position) {
+        final List<String> snapshot = getItems();
+
+        // Laid out a page at a time as they load instead
+        if (snapshot instanceof PagedResults) {
+            return;
+        }
+
+        final int from = Math.max(precomputedUpTo, position + 1);
+        final int to = Math.min(snapshot.size(), position + 1 + PRECOMPUTE_WINDOW);
+
+        // Only refill once half the window has been consumed
+        if (to - from < PRECOMPUTE_WINDOW / 2) {
+            return;
+        }
+
+        precomputedUpTo = to;
+        Completable.fromRunnable(() -> precompute(snapshot, from, to))
+                .compose(RxUtils.composeQueryCompletable())
+                .subscribe(() -> {
+                }, Throwable::printStackTrace);
+    }
+
+    /**
+     * Lays out the given range of texts and caches them. Safe to call from any thread
+     *
+     * @param data The result set
+     * @param from Start index, inclusive
+     * @param to   End index, exclusive
+     */
+    private void precompute(@NonNull List<String> data, int from, int to) {
+        final PrecomputedTextCompat.Params params = textParams;
+
+        if (params == null) {
+            return;
+        }
+
+        for (int i = from; i < to; i++) {
+            final String value = data.get(i);
+
+            // Placeholder of a page still loading
+            if (value != null && textCache.get(value) == null) {
+                textCache.put(value, PrecomputedTextCompat.create(value, params));
+            }
+        }
     }
 
     class SuggestionViewHolder extends RecyclerView.ViewHolder {
@@ -77,8 +180,22 @@ public class SuggestionsAdapter extends RecyclerView.Adapter<SuggestionsAdapter.
             this.binding = binding;
         }
 
-        void bind(@NonNull String value) {
-            binding.tvSuggestion.setText(value);
+        /**
+         * @param value The suggestion, {@literal null} while its page is loading
+         */
+        void bind(@Nullable String value) {
+            if (value == null) {
+                binding.tvSuggestion.setText(null);
+                return;
+            }
+
+            final PrecomputedTextCompat text = textCache.get(value);
+
+            if (text != null && text.getParams().equals(textParams)) {
+                TextViewCompat.setPrecomputedText(binding.tvSuggestion, text);
+            } else {
+                binding.tvSuggestion.setText(value);
+            }
         }
 
     }
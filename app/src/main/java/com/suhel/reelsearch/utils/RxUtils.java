@@ -26,58 +26,151 @@ package com.suhel.reelsearch.utils;
 
 import android.support.annotation.NonNull;
 import android.text.Editable;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.widget.EditText;
+import com.suhel.library.FrameTextCoalescer;
 import io.reactivex.*;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 
 public final class RxUtils {
 
+    private static volatile SchedulerPolicy sSchedulerPolicy = SchedulerPolicy.createDefault();
+
     private RxUtils() {
 
     }
 
+    /**
+     * Replaces the {@link SchedulerPolicy} used by the compose methods. The previous
+     * policy is shut down once its queued work has run
+     *
+     * @param policy The new policy
+     */
+    public static void setSchedulerPolicy(@NonNull SchedulerPolicy policy) {
+        final SchedulerPolicy previous = sSchedulerPolicy;
+        sSchedulerPolicy = policy;
+
+        if (previous != policy) {
+            previous.shutdown();
+        }
+    }
+
+    @NonNull
+    public static SchedulerPolicy getSchedulerPolicy() {
+        return sSchedulerPolicy;
+    }
+
+    /**
+     * Runs a CPU bound {@link Single} on the query lane of the {@link SchedulerPolicy}
+     * and delivers its single result to the main thread
+     */
+    public static <U> SingleTransformer<U, U> composeQuerySingle() {
+        return upstream -> upstream
+                .subscribeOn(sSchedulerPolicy.query())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Runs a CPU bound {@link Completable} on the query lane of the {@link SchedulerPolicy}
+     */
+    public static CompletableTransformer composeQueryCompletable() {
+        return upstream -> upstream
+                .subscribeOn(sSchedulerPolicy.query())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
     public static <U> CompletableTransformer composeCompletable() {
         return upstream -> upstream
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(sSchedulerPolicy.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .unsubscribeOn(Schedulers.io());
+                .unsubscribeOn(sSchedulerPolicy.io());
     }
 
     public static <U> SingleTransformer<U, U> composeSingle() {
         return upstream -> upstream
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(sSchedulerPolicy.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .unsubscribeOn(Schedulers.io());
+                .unsubscribeOn(sSchedulerPolicy.io());
     }
 
     public static <U> ObservableTransformer<U, U> composeObservable() {
         return upstream -> upstream
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(sSchedulerPolicy.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .unsubscribeOn(Schedulers.io());
+                .unsubscribeOn(sSchedulerPolicy.io());
     }
 
     public static <U> FlowableTransformer<U, U> composeFlowable() {
         return upstream -> upstream
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(sSchedulerPolicy.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .unsubscribeOn(Schedulers.io());
+                .unsubscribeOn(sSchedulerPolicy.io());
     }
 
     public static <U> MaybeTransformer<U, U> composeMaybe() {
         return upstream -> upstream
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(sSchedulerPolicy.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .unsubscribeOn(Schedulers.io());
+                .unsubscribeOn(sSchedulerPolicy.io());
     }
 
     public static Observable<String> onTextChange(@NonNull EditText editText) {
         return Observable.create(new TextWatcherObservable(editText));
     }
 
+    /**
+     * Emits the trimmed text of the {@link EditText} at most once per frame and only
+     * when it differs from the previously emitted value, as coalesced by a
+     * {@link FrameTextCoalescer}. Slow consumers only ever see the latest value.
+     * <p>
+     * Must be subscribed on the main thread
+     */
+    public static Flowable<String> onTextChangeFrames(@NonNull EditText editText) {
+        return Flowable.create(new FrameTextFlowable(editText), BackpressureStrategy.LATEST);
+    }
+
+    private static class FrameTextFlowable
+            implements FlowableOnSubscribe<String>, Disposable, FrameTextCoalescer.OnFrameTextListener {
+
+        @NonNull
+        private FrameTextCoalescer mTextCoalescer;
+        private FlowableEmitter<String> mEmitter;
+        private boolean mIsDisposed;
+
+        FrameTextFlowable(@NonNull EditText editText) {
+            mTextCoalescer = new FrameTextCoalescer(editText, this);
+            mIsDisposed = false;
+        }
+
+        @Override
+        public void subscribe(FlowableEmitter<String> emitter) throws Exception {
+            mEmitter = emitter;
+            mEmitter.setDisposable(this);
+            mTextCoalescer.start();
+        }
+
+        @Override
+        public void dispose() {
+            mTextCoalescer.stop();
+            mIsDisposed = true;
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return mIsDisposed;
+        }
+
+        @Override
+        public void onFrameText(@NonNull String text, boolean isChanged) {
+            if (isChanged && !mIsDisposed) {
+                mEmitter.onNext(text);
+            }
+        }
+
+    }
+
     private static class TextWatcherObservable implements ObservableOnSubscribe<String>, Disposable, TextWatcher {
 
         @NonNull
@@ -114,7 +207,8 @@ public final class RxUtils {
 
         @Override
         public void onTextChanged(CharSequence s, int start, int before, int count) {
-            mEmitter.onNext(s.toString().trim());
+            final int trimmedStart = trimStart(s);
+            mEmitter.onNext(TextUtils.substring(s, trimmedStart, trimEnd(s, trimmedStart)));
         }
 
         @Override
@@ -124,4 +218,31 @@ public final class RxUtils {
 
     }
 
+    /**
+     * @return Index of the first character {@link String#trim()} would keep
+     */
+    private static int trimStart(@NonNull CharSequence text) {
+        final int length = text.length();
+        int start = 0;
+
+        while (start < length && text.charAt(start) <= ' ') {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * @return Index right after the last character {@link String#trim()} would keep
+     */
+    private static int trimEnd(@NonNull CharSequence text, int start) {
+        int end = text.length();
+
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        return end;
+    }
+
 }
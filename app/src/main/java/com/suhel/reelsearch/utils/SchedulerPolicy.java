@@ -0,0 +1,265 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.reelsearch.utils;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Describes which {@link Scheduler} each kind of background work runs on.
+ * <p>
+ * Blocking I/O such as reading the dictionary goes to the I/O lane, while
+ * CPU bound work such as scanning the dictionary goes to the query lane, a
+ * bounded pool of lower priority threads which cannot outgrow the number of
+ * configured threads and compete with the render thread. Work that may be
+ * thrown away, such as precomputing results ahead of the keystrokes, goes to
+ * the speculation lane, a single thread of the lowest priority
+ */
+public final class SchedulerPolicy {
+
+    /**
+     * Default priority of the query threads, below
+     * {@link Thread#NORM_PRIORITY} so that the UI wins
+     */
+    public static final int DEFAULT_QUERY_THREAD_PRIORITY = Thread.NORM_PRIORITY - 2;
+
+    /**
+     * Query threads are let go after being idle for this long
+     */
+    private static final long QUERY_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Speculation runs one task at a time, anything more competes with real queries
+     */
+    private static final int SPECULATION_THREAD_COUNT = 1;
+
+    @NonNull
+    private final Scheduler mIoScheduler;
+
+    @NonNull
+    private final Scheduler mQueryScheduler;
+
+    @NonNull
+    private final ThreadPoolExecutor mQueryExecutor;
+
+    @NonNull
+    private final Scheduler mSpeculationScheduler;
+
+    @NonNull
+    private final ThreadPoolExecutor mSpeculationExecutor;
+
+    private SchedulerPolicy(@NonNull Builder builder) {
+        mIoScheduler = builder.mIoScheduler != null ? builder.mIoScheduler : Schedulers.io();
+        mQueryExecutor = new ThreadPoolExecutor(
+                builder.mQueryThreadCount,
+                builder.mQueryThreadCount,
+                QUERY_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new PriorityThreadFactory(builder.mQueryThreadName, builder.mQueryThreadPriority));
+        mQueryExecutor.allowCoreThreadTimeOut(true);
+        mQueryScheduler = Schedulers.from(mQueryExecutor);
+        mSpeculationExecutor = new ThreadPoolExecutor(
+                SPECULATION_THREAD_COUNT,
+                SPECULATION_THREAD_COUNT,
+                QUERY_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new PriorityThreadFactory(builder.mSpeculationThreadName, builder.mSpeculationThreadPriority));
+        mSpeculationExecutor.allowCoreThreadTimeOut(true);
+        mSpeculationScheduler = Schedulers.from(mSpeculationExecutor);
+    }
+
+    /**
+     * @return A policy with the default configuration
+     */
+    @NonNull
+    public static SchedulerPolicy createDefault() {
+        return new Builder().build();
+    }
+
+    /**
+     * @return The {@link Scheduler} for blocking I/O
+     */
+    @NonNull
+    public Scheduler io() {
+        return mIoScheduler;
+    }
+
+    /**
+     * @return The bounded {@link Scheduler} for CPU bound queries
+     */
+    @NonNull
+    public Scheduler query() {
+        return mQueryScheduler;
+    }
+
+    /**
+     * @return The single threaded {@link Scheduler} for work which may be thrown away
+     */
+    @NonNull
+    public Scheduler speculation() {
+        return mSpeculationScheduler;
+    }
+
+    /**
+     * @return The maximum number of threads the query lane can use
+     */
+    public int getQueryThreadCount() {
+        return mQueryExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return The number of threads the query lane currently holds
+     */
+    public int getQueryPoolSize() {
+        return mQueryExecutor.getPoolSize();
+    }
+
+    /**
+     * Stops the query and speculation threads once the queued work has run
+     */
+    public void shutdown() {
+        mQueryExecutor.shutdown();
+        mSpeculationExecutor.shutdown();
+    }
+
+    /**
+     * Builder for {@link SchedulerPolicy}
+     */
+    public static final class Builder {
+
+        private Scheduler mIoScheduler;
+        private int mQueryThreadCount;
+        private int mQueryThreadPriority;
+        private String mQueryThreadName;
+        private int mSpeculationThreadPriority;
+        private String mSpeculationThreadName;
+
+        public Builder() {
+            mQueryThreadCount = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+            mQueryThreadPriority = DEFAULT_QUERY_THREAD_PRIORITY;
+            mQueryThreadName = "ReelSearch-Query";
+            mSpeculationThreadPriority = Thread.MIN_PRIORITY;
+            mSpeculationThreadName = "ReelSearch-Speculation";
+        }
+
+        /**
+         * @param scheduler The {@link Scheduler} for blocking I/O, {@link Schedulers#io()} by default
+         */
+        public Builder setIoScheduler(@NonNull Scheduler scheduler) {
+            mIoScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * @param count Maximum number of query threads, half the cores capped at 2 by default
+         */
+        public Builder setQueryThreadCount(@IntRange(from = 1) int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Query thread count must be at least 1");
+            }
+            mQueryThreadCount = count;
+            return this;
+        }
+
+        /**
+         * @param priority Java priority of the query threads,
+         *                 {@link #DEFAULT_QUERY_THREAD_PRIORITY} by default
+         */
+        public Builder setQueryThreadPriority(@IntRange(from = Thread.MIN_PRIORITY, to = Thread.MAX_PRIORITY) int priority) {
+            if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+                throw new IllegalArgumentException("Invalid thread priority " + priority);
+            }
+            mQueryThreadPriority = priority;
+            return this;
+        }
+
+        /**
+         * @param name Prefix of the query thread names
+         */
+        public Builder setQueryThreadName(@NonNull String name) {
+            mQueryThreadName = name;
+            return this;
+        }
+
+        /**
+         * @param priority Java priority of the speculation thread, {@link Thread#MIN_PRIORITY} by default
+         */
+        public Builder setSpeculationThreadPriority(@IntRange(from = Thread.MIN_PRIORITY, to = Thread.MAX_PRIORITY) int priority) {
+            if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+                throw new IllegalArgumentException("Invalid thread priority " + priority);
+            }
+            mSpeculationThreadPriority = priority;
+            return this;
+        }
+
+        /**
+         * @param name Prefix of the speculation thread name
+         */
+        public Builder setSpeculationThreadName(@NonNull String name) {
+            mSpeculationThreadName = name;
+            return this;
+        }
+
+        public SchedulerPolicy build() {
+            return new SchedulerPolicy(this);
+        }
+
+    }
+
+    /**
+     * Creates named daemon threads with a fixed priority
+     */
+    private static class PriorityThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+        private final String mName;
+        private final int mPriority;
+
+        PriorityThreadFactory(@NonNull String name, int priority) {
+            mName = name;
+            mPriority = priority;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            final Thread thread = new Thread(r, mName + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(mPriority);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.suhel.reelsearch.utils;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the query lane of {@link SchedulerPolicy} stays bounded
+ * no matter how much CPU bound work is thrown at it
+ */
+public class SchedulerPolicyTest {
+
+    private static final int QUERY_THREADS = 2;
+    private static final int CONCURRENT_QUERIES = 200;
+
+    private SchedulerPolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new SchedulerPolicy.Builder()
+                .setQueryThreadCount(QUERY_THREADS)
+                .setQueryThreadPriority(Thread.MIN_PRIORITY)
+                .setQueryThreadName("Test-Query")
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        policy.shutdown();
+    }
+
+    @Test
+    public void queryLane_threadCountStaysBounded() {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        final List<Long> results = Observable.range(0, CONCURRENT_QUERIES)
+                .flatMapSingle(i -> Single.fromCallable(() -> {
+                    threads.add(Thread.currentThread());
+                    return spin(10_000);
+                }).subscribeOn(policy.query()))
+                .toList()
+                .blockingGet();
+
+        assertEquals(CONCURRENT_QUERIES, results.size());
+        assertTrue("Query lane used " + threads.size() + " threads", threads.size() <= QUERY_THREADS);
+        assertTrue(policy.getQueryPoolSize() <= QUERY_THREADS);
+        assertEquals(QUERY_THREADS, policy.getQueryThreadCount());
+    }
+
+    @Test
+    public void queryLane_appliesPriorityAndName() {
+        final Thread thread = Single.fromCallable(Thread::currentThread)
+                .subscribeOn(policy.query())
+                .blockingGet();
+
+        assertEquals(Thread.MIN_PRIORITY, thread.getPriority());
+        assertTrue(thread.getName().startsWith("Test-Query"));
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    public void ioLane_isSeparateFromQueryLane() {
+        final Thread ioThread = Single.fromCallable(Thread::currentThread)
+                .subscribeOn(policy.io())
+                .blockingGet();
+
+        assertFalse(ioThread.getName().startsWith("Test-Query"));
+    }
+
+    @Test
+    public void speculationLane_runsAtLowestPriority() {
+        final Thread thread = Single.fromCallable(Thread::currentThread)
+                .subscribeOn(policy.speculation())
+                .blockingGet();
+
+        assertEquals(Thread.MIN_PRIORITY, thread.getPriority());
+        assertTrue(thread.getName().startsWith("ReelSearch-Speculation"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsZeroThreads() {
+        new SchedulerPolicy.Builder().setQueryThreadCount(0);
+    }
+
+    private static long spin(int iterations) {
+        long acc = 0;
+        for (int i = 0; i < iterations; i++) {
+            acc += i * 31L;
+        }
+        return acc;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list made of batches of suggestions laid end to end, so
+ * that appending a batch neither copies nor changes the previous list
+ *
+ * @param <T> Type of the suggestions
+ */
+final class BatchedList<T> extends AbstractList<T> implements RandomAccess {
+
+    @SuppressWarnings("unchecked")
+    private static final BatchedList<Object> EMPTY = new BatchedList<>((List<Object>[]) new List[0], new int[0]);
+
+    /**
+     * Stores the batches in order
+     */
+    private final List<T>[] mBatches;
+
+    /**
+     * Stores the position right after the last item of each batch
+     */
+    private final int[] mEnds;
+
+    private BatchedList(List<T>[] batches, int[] ends) {
+        mBatches = batches;
+        mEnds = ends;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> BatchedList<T> empty() {
+        return (BatchedList<T>) EMPTY;
+    }
+
+    /**
+     * @param batch The batch to append
+     * @return A list holding the items of this one followed by the batch
+     */
+    @NonNull
+    BatchedList<T> append(@NonNull List<T> batch) {
+        if (batch.isEmpty()) {
+            return this;
+        }
+
+        final int count = mBatches.length;
+        final List<T>[] batches = Arrays.copyOf(mBatches, count + 1);
+        final int[] ends = Arrays.copyOf(mEnds, count + 1);
+        batches[count] = Collections.unmodifiableList(batch);
+        ends[count] = size() + batch.size();
+
+        return new BatchedList<>(batches, ends);
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+
+        // Results come in a handful of batches
+        int batch = 0;
+        while (mEnds[batch] <= index) {
+            batch++;
+        }
+
+        return mBatches[batch].get(batch == 0 ? index : index - mEnds[batch - 1]);
+    }
+
+    @Override
+    public int size() {
+        return mEnds.length == 0 ? 0 : mEnds[mEnds.length - 1];
+    }
+
+}
@@ -24,19 +24,25 @@
 
 package com.suhel.library;
 
+import android.graphics.PointF;
 import android.support.annotation.FloatRange;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.ViewGroup;
 
 /**
  * A custom {@link android.support.v7.widget.RecyclerView.LayoutManager} which
  * applies top and bottom offsets to achieve a reel effect
+ * <p>
+ * Scroll positions are kept as 64 bit values so that the reel works across
+ * any number of items the adapter can report, however tall the rows are
  */
-public class CenteredLayoutManager extends RecyclerView.LayoutManager {
+public class CenteredLayoutManager extends RecyclerView.LayoutManager
+        implements RecyclerView.SmoothScroller.ScrollVectorProvider {
 
     /**
      * Stores the references of {@link OnSelectionChangedListener} delegates
@@ -45,15 +51,45 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
     private OnSelectionChangedListener mOnSelectionChangedListener;
 
     /**
-     * Stores the absolute scroll value
+     * Stores the reference of {@link OnSelectionScrolledListener} delegate
+     * to inform about the centered item while scrolling
      */
-    private int mScrollY;
+    private OnSelectionScrolledListener mOnSelectionScrolledListener;
+
+    /**
+     * Dispatches the pending scrolled selection once per frame.
+     * Allocated once so that the scroll path stays allocation free
+     */
+    private final Choreographer.FrameCallback mSelectionFrameCallback = frameTimeNanos -> dispatchScrolledSelection();
+
+    /**
+     * Stores the centered position computed in the latest scroll
+     */
+    private int mScrolledSelection;
+
+    /**
+     * Stores the centered position last sent to the
+     * {@link OnSelectionScrolledListener}
+     */
+    private int mDispatchedScrolledSelection;
+
+    /**
+     * Whether {@link #mSelectionFrameCallback} is waiting for the next frame
+     */
+    private boolean mIsSelectionFramePending;
+
+    /**
+     * Stores the absolute scroll value. Kept as a long since
+     * item count times child height overflows an int for
+     * large result sets
+     */
+    private long mScrollY;
 
     /**
      * Stores the value of the maximum scroll
      * that can be reached
      */
-    private int mMaxScrollY;
+    private long mMaxScrollY;
 
     /**
      * Stores the number of total items in the adapter
@@ -81,6 +117,12 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
      */
     private int mCenterY;
 
+    /**
+     * Stores the position scrolled to before the height of the
+     * children was known, applied by the next layout
+     */
+    private int mPendingScrollPosition = RecyclerView.NO_POSITION;
+
     /**
      * Stores the previous selected position to ensure
      * duplicate values aren't sent to {@link OnSelectionChangedListener}
@@ -93,11 +135,19 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
      */
     private ChildTransformer mChildTransformer;
 
+    /**
+     * Stores the {@link FrameMonitor} timing the layout phases,
+     * {@literal null} unless frame monitoring is turned on
+     */
+    private FrameMonitor mFrameMonitor;
+
     /**
      * Constructor to initialize required members
      */
     public CenteredLayoutManager() {
         mPreviousSelection = -1;
+        mScrolledSelection = -1;
+        mDispatchedScrolledSelection = -1;
     }
 
     /**
@@ -119,6 +169,16 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
         this.mChildTransformer = childTransformer;
     }
 
+    /**
+     * Sets the {@link FrameMonitor} to which the time spent in each
+     * {@link FrameMonitor.FramePhase} is reported
+     *
+     * @param frameMonitor The {@link FrameMonitor}, {@literal null} to stop timing
+     */
+    void setFrameMonitor(@Nullable FrameMonitor frameMonitor) {
+        mFrameMonitor = frameMonitor;
+    }
+
     /**
      * @return The left edge of the viewable area
      */
@@ -154,12 +214,22 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
 
     @Override
     public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
-        detachAllViews(recycler);
-
         mChildCount = state.getItemCount();
 
+        // Measured from the attached children, if any, before they are detached
         if (mChildCount != 0) {
             calculateDimensions(recycler, state);
+        }
+
+        detachAllViews(recycler);
+
+        if (mChildCount != 0) {
+
+            if (mPendingScrollPosition != RecyclerView.NO_POSITION) {
+                mScrollY = Math.min(Math.max((long) mPendingScrollPosition * mChildHeight, 0L), mMaxScrollY);
+                mPendingScrollPosition = RecyclerView.NO_POSITION;
+            }
+
             render(recycler);
             recycle(recycler);
         }
@@ -178,14 +248,77 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
             return 0;
         }
 
-        final int lastScrollY = mScrollY;
-        mScrollY = Math.min(Math.max(mScrollY + dy, 0), mMaxScrollY);
+        final long lastScrollY = mScrollY;
+        mScrollY = Math.min(Math.max(mScrollY + dy, 0L), mMaxScrollY);
 
         detachAllViews(recycler);
         render(recycler);
         recycle(recycler);
 
-        return mScrollY - lastScrollY;
+        if (mOnSelectionScrolledListener != null) {
+            onSelectionScrolled();
+        }
+
+        // Bounded by dy hence fits in an int
+        return (int) (mScrollY - lastScrollY);
+    }
+
+    @Override
+    public void scrollToPosition(int position) {
+        if (mChildHeight == 0) {
+            // Applied once the first layout has measured the children
+            mPendingScrollPosition = position;
+            requestLayout();
+            return;
+        }
+
+        mPendingScrollPosition = RecyclerView.NO_POSITION;
+        mScrollY = Math.min(Math.max((long) position * mChildHeight, 0L), mMaxScrollY);
+        requestLayout();
+    }
+
+    @Override
+    public PointF computeScrollVectorForPosition(int targetPosition) {
+        if (getChildCount() == 0) {
+            return null;
+        }
+
+        return new PointF(0, targetPosition < getSelection() ? -1 : 1);
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(RecyclerView.State state) {
+        return (int) (mScrollY / getScrollbarScale());
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(RecyclerView.State state) {
+        return (int) Math.max(getHeight() / getScrollbarScale(), 1L);
+    }
+
+    @Override
+    public int computeVerticalScrollRange(RecyclerView.State state) {
+        return (int) ((mMaxScrollY + getHeight()) / getScrollbarScale());
+    }
+
+    /**
+     * The scrollbar works with ints, so the scroll values are divided by
+     * this factor to bring the whole range within an int
+     *
+     * @return The factor to divide the scroll values with, 1 for regular lists
+     */
+    private long getScrollbarScale() {
+        return 1L + (mMaxScrollY + getHeight()) / Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void onDetachedFromWindow(RecyclerView view, RecyclerView.Recycler recycler) {
+        super.onDetachedFromWindow(view, recycler);
+
+        if (mIsSelectionFramePending) {
+            Choreographer.getInstance().removeFrameCallback(mSelectionFrameCallback);
+            mIsSelectionFramePending = false;
+        }
     }
 
     @Override
@@ -224,6 +357,43 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
         mOnSelectionChangedListener = listener;
     }
 
+    /**
+     * Sets the {@link OnSelectionScrolledListener} which is informed about the
+     * centered item while the reel is being scrolled, at most once per frame
+     *
+     * @param listener The {@link OnSelectionScrolledListener} to be set
+     */
+    public void setOnSelectionScrolledListener(@Nullable OnSelectionScrolledListener listener) {
+        mOnSelectionScrolledListener = listener;
+    }
+
+    /**
+     * Records the centered position after a scroll and schedules
+     * the dispatch for the next frame if it has changed
+     */
+    private void onSelectionScrolled() {
+        mScrolledSelection = getSelection();
+
+        if (mScrolledSelection != mDispatchedScrolledSelection && !mIsSelectionFramePending) {
+            mIsSelectionFramePending = true;
+            Choreographer.getInstance().postFrameCallback(mSelectionFrameCallback);
+        }
+    }
+
+    /**
+     * Sends the latest centered position to the {@link OnSelectionScrolledListener}
+     * unless it is the one sent last time
+     */
+    private void dispatchScrolledSelection() {
+        mIsSelectionFramePending = false;
+
+        if (mOnSelectionScrolledListener != null && mScrolledSelection != mDispatchedScrolledSelection) {
+            final int previousSelection = mDispatchedScrolledSelection;
+            mDispatchedScrolledSelection = mScrolledSelection;
+            mOnSelectionScrolledListener.onSelectionScrolled(previousSelection, mScrolledSelection);
+        }
+    }
+
     /**
      * Returns the position of item highlighted in the middle of the
      * screen
@@ -231,7 +401,12 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
      * @return Item index starting from 0
      */
     public int getSelection() {
-        return (int) (((float) mScrollY / mChildHeight) + 0.5f);
+        if (mChildHeight == 0) {
+            return 0;
+        }
+
+        // Integer arithmetic, a float loses precision past 2^24 pixels
+        return (int) ((mScrollY + mChildHeight / 2) / mChildHeight);
     }
 
     /**
@@ -245,19 +420,34 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
             return;
         }
 
+        final FrameMonitor frameMonitor = mFrameMonitor;
+        final long renderStart = frameMonitor != null ? System.nanoTime() : 0L;
+        long bindNanos = 0L;
+        long transformNanos = 0L;
+
         final int firstIndex = (mScrollY >= mTopOffset) ?
-                Math.min((mScrollY - mTopOffset) / mChildHeight, mChildCount - 1) :
+                (int) Math.min((mScrollY - mTopOffset) / mChildHeight, mChildCount - 1) :
                 0;
 
+        // Both branches are within a screen height hence fit in an int
         final int firstTop = (mScrollY >= mTopOffset) ?
-                -((mScrollY - mTopOffset) % mChildHeight) :
-                mTopOffset - mScrollY;
+                (int) -((mScrollY - mTopOffset) % mChildHeight) :
+                (int) (mTopOffset - mScrollY);
 
         for (int i = firstIndex, top = firstTop, bottom;
              i < mChildCount && top < getParentBottom();
              i++, top = bottom) {
 
-            View v = recycler.getViewForPosition(i);
+            final View v;
+
+            if (frameMonitor != null) {
+                final long bindStart = System.nanoTime();
+                v = recycler.getViewForPosition(i);
+                bindNanos += System.nanoTime() - bindStart;
+            } else {
+                v = recycler.getViewForPosition(i);
+            }
+
             addView(v);
             measureChildWithMargins(v, 0, 0);
             bottom = top + getDecoratedMeasuredHeight(v);
@@ -267,9 +457,23 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
                 final int childCenterY = (top + bottom) / 2;
                 final float childCenterOffset = (float) (childCenterY - mCenterY);
                 final float childCenterOffsetRatio = Math.min(Math.max(childCenterOffset / mCenterY, -1.0f), 1.0f);
-                mChildTransformer.onApplyTransform(v, i, i - firstIndex, childCenterOffsetRatio);
+
+                if (frameMonitor != null) {
+                    final long transformStart = System.nanoTime();
+                    mChildTransformer.onApplyTransform(v, i, i - firstIndex, childCenterOffsetRatio);
+                    transformNanos += System.nanoTime() - transformStart;
+                } else {
+                    mChildTransformer.onApplyTransform(v, i, i - firstIndex, childCenterOffsetRatio);
+                }
             }
         }
+
+        if (frameMonitor != null) {
+            final long renderNanos = System.nanoTime() - renderStart;
+            frameMonitor.addPhaseTime(FrameMonitor.FramePhase.BIND, bindNanos);
+            frameMonitor.addPhaseTime(FrameMonitor.FramePhase.TRANSFORM, transformNanos);
+            frameMonitor.addPhaseTime(FrameMonitor.FramePhase.RENDER, renderNanos - bindNanos - transformNanos);
+        }
     }
 
     /**
@@ -292,6 +496,24 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
      *                 passed to recycle views out of view bounds
      */
     private void recycle(@NonNull RecyclerView.Recycler recycler) {
+        final FrameMonitor frameMonitor = mFrameMonitor;
+
+        if (frameMonitor != null) {
+            final long start = System.nanoTime();
+            recycleOutOfBounds(recycler);
+            frameMonitor.addPhaseTime(FrameMonitor.FramePhase.RECYCLE, System.nanoTime() - start);
+        } else {
+            recycleOutOfBounds(recycler);
+        }
+    }
+
+    /**
+     * Removes and recycles the children lying outside the viewable area
+     *
+     * @param recycler The {@link android.support.v7.widget.RecyclerView.Recycler}
+     *                 passed to recycle views out of view bounds
+     */
+    private void recycleOutOfBounds(@NonNull RecyclerView.Recycler recycler) {
         final int childCount = getChildCount();
         boolean foundFirst = false;
         int first = 0;
@@ -321,7 +543,10 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
     }
 
     /**
-     * Calculates all the required dimensions based on the current {@link android.support.v7.widget.RecyclerView.State}
+     * Calculates all the required dimensions based on the current {@link android.support.v7.widget.RecyclerView.State}.
+     * The height of the children is measured on an attached child, only binding the
+     * first position when there is none. Binding it on every layout would keep loading
+     * the first page of {@link PagedResults} back in during deep scrolls
      *
      * @param recycler The {@link android.support.v7.widget.RecyclerView.Recycler}
      *                 passed to inflate a scrap or dummy view to cache the height
@@ -331,15 +556,23 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
      */
     private void calculateDimensions(RecyclerView.Recycler recycler, RecyclerView.State state) {
         mCenterY = (getParentTop() + getParentBottom()) / 2;
-        View scrap = recycler.getViewForPosition(0);
-        addView(scrap);
-        measureChildWithMargins(scrap, 0, 0);
-        mChildHeight = getDecoratedMeasuredHeight(scrap);
-        detachAndScrapView(scrap, recycler);
+
+        if (getChildCount() > 0) {
+            final View child = getChildAt(0);
+            measureChildWithMargins(child, 0, 0);
+            mChildHeight = getDecoratedMeasuredHeight(child);
+        } else {
+            View scrap = recycler.getViewForPosition(0);
+            addView(scrap);
+            measureChildWithMargins(scrap, 0, 0);
+            mChildHeight = getDecoratedMeasuredHeight(scrap);
+            detachAndScrapView(scrap, recycler);
+        }
+
         final int halfChildHeight = mChildHeight / 2;
         mTopOffset = mCenterY - halfChildHeight;
         mBottomOffset = getHeight() - mCenterY - halfChildHeight;
-        mMaxScrollY = mTopOffset + (state.getItemCount() * mChildHeight) + mBottomOffset - getHeight();
+        mMaxScrollY = mTopOffset + ((long) state.getItemCount() * mChildHeight) + mBottomOffset - getHeight();
         mScrollY = Math.min(mMaxScrollY, mScrollY);
     }
 
@@ -381,4 +614,21 @@ public class CenteredLayoutManager extends RecyclerView.LayoutManager {
 
     }
 
+    /**
+     * An interface used to notify others about the centered item
+     * changing while the reel is still scrolling
+     */
+    public interface OnSelectionScrolledListener {
+
+        /**
+         * Called on the frame after a scroll moved a different item to
+         * the center. Called at most once per frame, keep it cheap
+         *
+         * @param previousSelection The previously centered item, -1 initially
+         * @param newSelection      The item now at the center
+         */
+        void onSelectionScrolled(int previousSelection, int newSelection);
+
+    }
+
 }
@@ -0,0 +1,279 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+
+/**
+ * Watches frames while the reel scrolls and reports the ones over budget
+ * along with the time {@link CenteredLayoutManager} spent in each
+ * {@link FramePhase} while producing them.
+ * <p>
+ * Frame time is taken as the distance between consecutive vsync timestamps
+ * from {@link Choreographer}, which grows by a whole interval for every
+ * dropped frame. Everything runs on the main thread and nothing is allocated
+ * per frame. Frame callbacks are only posted between {@link #start()} and
+ * {@link #stop()} so an idle reel does not keep vsync running
+ */
+public class FrameMonitor implements Choreographer.FrameCallback {
+
+    private static final FramePhase[] PHASES = FramePhase.values();
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Stores the time accumulated in each phase since the last frame
+     */
+    private final long[] mPhaseNanos = new long[PHASES.length];
+
+    /**
+     * Reused for every report, see {@link OnJankFrameListener}
+     */
+    private final FrameReport mReport = new FrameReport();
+
+    /**
+     * Stores the {@link Choreographer} of the main thread posting the frames
+     */
+    private final Choreographer mChoreographer;
+
+    /**
+     * Stores the listener reported to, frames are timed but not reported without one
+     */
+    private OnJankFrameListener mListener;
+
+    /**
+     * Stores the budget of a frame
+     */
+    private long mBudgetNanos;
+
+    /**
+     * Stores the vsync time of the previous frame, 0 if there was none
+     */
+    private long mLastFrameTimeNanos;
+
+    /**
+     * Whether a frame callback is posted and phase time is taken
+     */
+    private boolean mIsRunning;
+
+    /**
+     * @param refreshRate Refresh rate of the display in Hz, which sets the frame budget
+     */
+    public FrameMonitor(float refreshRate) {
+        mChoreographer = Choreographer.getInstance();
+        setRefreshRate(refreshRate);
+    }
+
+    /**
+     * @param refreshRate Refresh rate of the display in Hz, which sets the frame budget
+     */
+    public void setRefreshRate(float refreshRate) {
+        mBudgetNanos = (long) (NANOS_PER_SECOND / Math.max(refreshRate, 1.0f));
+    }
+
+    /**
+     * @return The budget of a frame in nanoseconds
+     */
+    public long getBudgetNanos() {
+        return mBudgetNanos;
+    }
+
+    /**
+     * @param listener The {@link OnJankFrameListener} to report frames over budget to
+     */
+    public void setOnJankFrameListener(@Nullable OnJankFrameListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Starts watching frames, typically once the reel starts scrolling
+     */
+    public void start() {
+        if (!mIsRunning) {
+            mIsRunning = true;
+            mLastFrameTimeNanos = 0;
+            clearPhases();
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stops watching frames, typically once the reel settles
+     */
+    public void stop() {
+        if (mIsRunning) {
+            mIsRunning = false;
+            mChoreographer.removeFrameCallback(this);
+        }
+    }
+
+    /**
+     * Adds time spent in a phase of the current frame. Ignored while stopped
+     *
+     * @param phase The phase
+     * @param nanos Time spent in nanoseconds
+     */
+    void addPhaseTime(@NonNull FramePhase phase, long nanos) {
+        if (mIsRunning) {
+            mPhaseNanos[phase.ordinal()] += nanos;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mIsRunning) {
+            return;
+        }
+
+        // The work accumulated so far was done while producing the previous frame
+        if (mLastFrameTimeNanos != 0 && mListener != null) {
+            final long frameNanos = frameTimeNanos - mLastFrameTimeNanos;
+
+            // Allow for vsync jitter before calling it a dropped frame
+            if (frameNanos > mBudgetNanos + mBudgetNanos / 2) {
+                mReport.set(frameNanos, mBudgetNanos, mPhaseNanos);
+                mListener.onJankFrame(mReport);
+            }
+        }
+
+        mLastFrameTimeNanos = frameTimeNanos;
+        clearPhases();
+        mChoreographer.postFrameCallback(this);
+    }
+
+    private void clearPhases() {
+        for (int i = 0; i < mPhaseNanos.length; i++) {
+            mPhaseNanos[i] = 0;
+        }
+    }
+
+    /**
+     * The phases of laying out the reel that are timed
+     */
+    public enum FramePhase {
+
+        /**
+         * Adding, measuring and laying out children, excluding
+         * {@link #BIND} and {@link #TRANSFORM}
+         */
+        RENDER,
+
+        /**
+         * Removing and recycling children which went off screen
+         */
+        RECYCLE,
+
+        /**
+         * Calls to the {@link CenteredLayoutManager.ChildTransformer}
+         */
+        TRANSFORM,
+
+        /**
+         * Getting children from the recycler, which creates and binds them as needed
+         */
+        BIND
+
+    }
+
+    /**
+     * Breakdown of a frame over budget. The instance is reused for
+     * the next report, copy out what is needed instead of keeping it
+     */
+    public static final class FrameReport {
+
+        private final long[] mPhaseNanos = new long[PHASES.length];
+        private long mFrameNanos;
+        private long mBudgetNanos;
+
+        void set(long frameNanos, long budgetNanos, long[] phaseNanos) {
+            mFrameNanos = frameNanos;
+            mBudgetNanos = budgetNanos;
+            System.arraycopy(phaseNanos, 0, mPhaseNanos, 0, mPhaseNanos.length);
+        }
+
+        /**
+         * @return Time between the vsync of this frame and the next one
+         */
+        public long getFrameNanos() {
+            return mFrameNanos;
+        }
+
+        /**
+         * @return The budget the frame went over
+         */
+        public long getBudgetNanos() {
+            return mBudgetNanos;
+        }
+
+        /**
+         * @return Number of vsyncs missed, at least 1 for a reported frame
+         */
+        public int getDroppedFrames() {
+            return (int) Math.max((mFrameNanos + mBudgetNanos / 2) / mBudgetNanos - 1, 1L);
+        }
+
+        /**
+         * @param phase The phase
+         * @return Time spent in the phase during the frame
+         */
+        public long getPhaseNanos(@NonNull FramePhase phase) {
+            return mPhaseNanos[phase.ordinal()];
+        }
+
+        /**
+         * @return The phase which took the longest during the frame
+         */
+        @NonNull
+        public FramePhase getSlowestPhase() {
+            FramePhase slowest = PHASES[0];
+
+            for (FramePhase phase : PHASES) {
+                if (mPhaseNanos[phase.ordinal()] > mPhaseNanos[slowest.ordinal()]) {
+                    slowest = phase;
+                }
+            }
+
+            return slowest;
+        }
+
+    }
+
+    /**
+     * An interface used to report frames over budget
+     */
+    public interface OnJankFrameListener {
+
+        /**
+         * Called on the main thread for every frame which took longer than the budget
+         *
+         * @param report The breakdown of the frame, only valid during the call
+         */
+        void onJankFrame(@NonNull FrameReport report);
+
+    }
+
+}
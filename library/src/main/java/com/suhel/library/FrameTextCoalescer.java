@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.view.Choreographer;
+import android.widget.EditText;
+
+/**
+ * Coalesces the changes to the text of an {@link EditText} into at most one
+ * report per frame. Bursts of callbacks from paste, autocorrect or IME
+ * composition within a frame collapse into a single report of the trimmed text.
+ * <p>
+ * The text is compared in place with the previously reported one and copied
+ * only when it has changed. Everything runs on the main thread
+ */
+public final class FrameTextCoalescer implements TextWatcher, Choreographer.FrameCallback {
+
+    /**
+     * Stores the {@link EditText} being watched
+     */
+    @NonNull
+    private final EditText mEditText;
+
+    /**
+     * Stores the listener the text is reported to
+     */
+    @NonNull
+    private final OnFrameTextListener mListener;
+
+    /**
+     * Stores the {@link Choreographer} of the main thread
+     */
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+
+    /**
+     * Stores the text last reported, null before the first report
+     */
+    @Nullable
+    private String mText;
+
+    /**
+     * Whether a frame callback is posted and not run yet
+     */
+    private boolean mIsFramePending;
+
+    /**
+     * @param editText The {@link EditText} to watch
+     * @param listener The {@link OnFrameTextListener} to report the text to
+     */
+    public FrameTextCoalescer(@NonNull EditText editText, @NonNull OnFrameTextListener listener) {
+        mEditText = editText;
+        mListener = listener;
+    }
+
+    /**
+     * Starts watching the text, the first report counting as a change
+     */
+    public void start() {
+        mEditText.addTextChangedListener(this);
+    }
+
+    /**
+     * Stops watching the text and forgets the text last reported
+     */
+    public void stop() {
+        mEditText.removeTextChangedListener(this);
+
+        if (mIsFramePending) {
+            mChoreographer.removeFrameCallback(this);
+            mIsFramePending = false;
+        }
+
+        mText = null;
+    }
+
+    /**
+     * Reports the current text right away instead of on the next frame
+     *
+     * @param force Whether to report it as changed even if it is not
+     */
+    public void flush(boolean force) {
+        if (mIsFramePending) {
+            mChoreographer.removeFrameCallback(this);
+            mIsFramePending = false;
+        }
+
+        final Editable text = mEditText.getText();
+        int start = 0;
+        int end = text.length();
+
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        if (!force && mText != null && regionEquals(text, start, end, mText)) {
+            mListener.onFrameText(mText, false);
+        } else {
+            mText = TextUtils.substring(text, start, end);
+            mListener.onFrameText(mText, true);
+        }
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+        if (!mIsFramePending) {
+            mIsFramePending = true;
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mIsFramePending = false;
+        flush(false);
+    }
+
+    private static boolean regionEquals(@NonNull CharSequence text, int start, int end, @NonNull String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != value.charAt(i - start)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Listener to be told about the text on the frame after it was typed, on the main thread
+     */
+    public interface OnFrameTextListener {
+
+        /**
+         * @param text      The trimmed text, the same instance as last time unless changed
+         * @param isChanged Whether the text differs from the one reported last time,
+         *                  which it does not when only surrounding whitespace was typed
+         */
+        void onFrameText(@NonNull String text, boolean isChanged);
+
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.os.Process;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SuggestionSource} over a fixed collection of strings held in memory,
+ * suggesting the ones starting with the query regardless of case.
+ * <p>
+ * The strings are kept sorted ignoring case, so that the matches of a query form
+ * one contiguous range found with two binary searches. The range is delivered in
+ * batches from a background thread, checking for cancellation between them
+ */
+public class InMemorySuggestionSource implements SuggestionSource<String> {
+
+    /**
+     * Number of suggestions per batch, a screenful or two
+     */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    /**
+     * Name of the default background thread, visible in traces
+     */
+    private static final String THREAD_NAME = "ReelSearch-Suggestions";
+
+    /**
+     * Seconds the default background thread is kept around without queries
+     */
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Stores the strings sorted ignoring case
+     */
+    @NonNull
+    private final List<String> mItems;
+
+    @NonNull
+    private final Executor mExecutor;
+
+    private final int mBatchSize;
+
+    /**
+     * Stores the requests which have been neither cancelled nor completed
+     */
+    private final Map<Long, Boolean> mRunning = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a source querying on a background thread shared by all the sources
+     * created this way, which exits while there are no queries
+     *
+     * @param items The strings to suggest
+     */
+    public InMemorySuggestionSource(@NonNull Collection<String> items) {
+        this(items, DefaultExecutor.INSTANCE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param items     The strings to suggest
+     * @param executor  Runs the queries, off the main thread
+     * @param batchSize Number of suggestions per batch
+     */
+    public InMemorySuggestionSource(@NonNull Collection<String> items,
+                                    @NonNull Executor executor,
+                                    @IntRange(from = 1) int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+
+        final String[] sorted = items.toArray(new String[0]);
+        Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+        mItems = Arrays.asList(sorted);
+        mExecutor = executor;
+        mBatchSize = batchSize;
+    }
+
+    @Override
+    public void query(long requestId, @NonNull String query, @NonNull Callback<String> callback) {
+        mRunning.put(requestId, Boolean.TRUE);
+        mExecutor.execute(() -> {
+            try {
+                final int from = lowerBound(query);
+                final int to = prefixEnd(query, from);
+                int start = from;
+
+                do {
+                    final int end = Math.min(to, start + mBatchSize);
+
+                    if (!mRunning.containsKey(requestId)) {
+                        return;
+                    }
+
+                    callback.onResults(requestId, mItems.subList(start, end), end == to);
+                    start = end;
+                } while (start < to);
+            } catch (RuntimeException e) {
+                callback.onError(requestId, e);
+            } finally {
+                mRunning.remove(requestId);
+            }
+        });
+    }
+
+    @Override
+    public void cancel(long requestId) {
+        mRunning.remove(requestId);
+    }
+
+    /**
+     * @return Index of the first string not less than the query, ignoring case
+     */
+    private int lowerBound(@NonNull String query) {
+        int lo = 0;
+        int hi = mItems.size();
+
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+
+            if (String.CASE_INSENSITIVE_ORDER.compare(mItems.get(mid), query) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * @return Index right after the last string starting with the query, ignoring case
+     */
+    private int prefixEnd(@NonNull String query, int from) {
+        int lo = from;
+        int hi = mItems.size();
+
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+
+            if (mItems.get(mid).regionMatches(true, 0, query, 0, query.length())) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * Holds the executor of the sources created without one, created on first use
+     */
+    private static final class DefaultExecutor {
+
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                    THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                final Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+    }
+
+}
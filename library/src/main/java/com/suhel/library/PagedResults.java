@@ -0,0 +1,431 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * A result set too large to materialize, loaded a page at a time around the
+ * position centered in the reel. Deliver it as the only batch of a request
+ * through {@link SuggestionSource.Callback#onResults(long, List, boolean)}.
+ * <p>
+ * Its size is the known or estimated total count. Items of pages not loaded
+ * yet are {@literal null} placeholders, whose pages are loaded on first access.
+ * As the reel moves, the pages around the centered position are kept loaded and
+ * a few more are prefetched in the direction of the scroll, while the pages
+ * farthest from it are evicted to stay within the cap on resident pages.
+ * <p>
+ * Thread safe. Pages load on the load executor and changes are announced on the
+ * main thread, where an estimated count is also corrected once a short page
+ * shows where the results really end
+ *
+ * @param <T> Type of the suggestions
+ */
+public final class PagedResults<T> extends AbstractList<T> implements RandomAccess {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_MAX_RESIDENT_PAGES = 8;
+    public static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    /**
+     * Pages on either side of the centered one always kept loaded
+     */
+    private static final int NEIGHBOUR_PAGES = 1;
+
+    @NonNull
+    private final PageLoader<T> mLoader;
+
+    @NonNull
+    private final Executor mLoadExecutor;
+
+    @NonNull
+    private final Executor mDeliveryExecutor;
+
+    private final int mPageSize;
+    private final int mMaxResidentPages;
+    private final int mPrefetchPages;
+
+    // Guarded by this
+    private final Map<Integer, List<T>> mPages = new HashMap<>();
+    private final Set<Integer> mLoading = new HashSet<>();
+    private int mCenterPage;
+    private int mDirection;
+    private boolean mIsReleased;
+
+    /**
+     * Stores the count seen by {@link #size()}, only changed on the delivery thread
+     */
+    private volatile int mCount;
+    private volatile boolean mIsCountExact;
+
+    @Nullable
+    private volatile OnChangeListener mListener;
+
+    private PagedResults(@NonNull Builder<T> builder) {
+        mLoader = builder.mLoader;
+        mLoadExecutor = builder.mLoadExecutor;
+        mDeliveryExecutor = builder.mDeliveryExecutor != null
+                ? builder.mDeliveryExecutor
+                : new Handler(Looper.getMainLooper())::post;
+        mPageSize = builder.mPageSize;
+        mMaxResidentPages = builder.mMaxResidentPages;
+        mPrefetchPages = builder.mPrefetchPages;
+        mCount = builder.mCount;
+        mIsCountExact = builder.mIsCountExact;
+    }
+
+    /**
+     * Returns the item if its page is loaded, otherwise starts loading
+     * the page and returns a placeholder
+     *
+     * @param index Position of the item
+     * @return The item, {@literal null} while its page is loading
+     */
+    @Nullable
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mCount);
+        }
+
+        final int page = index / mPageSize;
+
+        synchronized (this) {
+            final List<T> items = mPages.get(page);
+
+            if (items == null) {
+                requestLocked(page);
+                return null;
+            }
+
+            final int offset = index - page * mPageSize;
+            return offset < items.size() ? items.get(offset) : null;
+        }
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * @return Whether {@link #size()} is the exact count rather than an estimate
+     */
+    public boolean isCountExact() {
+        return mIsCountExact;
+    }
+
+    /**
+     * @return Number of pages held in memory
+     */
+    public synchronized int getResidentPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * @param position Position of the item
+     * @return Whether the page of the item is held in memory
+     */
+    public synchronized boolean isLoaded(int position) {
+        return mPages.containsKey(position / mPageSize);
+    }
+
+    /**
+     * Keeps the pages around the position loaded and prefetches the ones ahead of it
+     *
+     * @param position  The position centered in the reel
+     * @param direction Positive when scrolling towards the end, negative towards
+     *                  the start, zero when still
+     */
+    public synchronized void onCenterChanged(int position, int direction) {
+        final int center = Math.max(0, position) / mPageSize;
+        mCenterPage = center;
+        mDirection = direction;
+
+        for (int page = center - NEIGHBOUR_PAGES; page <= center + NEIGHBOUR_PAGES; page++) {
+            requestLocked(page);
+        }
+
+        if (direction != 0) {
+            final int step = direction > 0 ? 1 : -1;
+
+            for (int i = 1; i <= mPrefetchPages; i++) {
+                requestLocked(center + step * (NEIGHBOUR_PAGES + i));
+            }
+        }
+    }
+
+    /**
+     * Drops every page and ignores pages still loading. Called once the results are replaced
+     */
+    public synchronized void release() {
+        mIsReleased = true;
+        mPages.clear();
+        mLoading.clear();
+        mListener = null;
+    }
+
+    void setOnChangeListener(@Nullable OnChangeListener listener) {
+        mListener = listener;
+    }
+
+    private void requestLocked(int page) {
+        if (mIsReleased || page < 0 || (long) page * mPageSize >= mCount
+                || mPages.containsKey(page) || !mLoading.add(page)) {
+            return;
+        }
+
+        mLoadExecutor.execute(() -> load(page));
+    }
+
+    private void load(int page) {
+        final int offset = page * mPageSize;
+        List<T> items;
+
+        try {
+            items = mLoader.load(offset, mPageSize);
+        } catch (Exception e) {
+            // Left as placeholders, retried on the next access
+            synchronized (this) {
+                mLoading.remove(page);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            if (mIsReleased || !mLoading.remove(page)) {
+                return;
+            }
+
+            mPages.put(page, Collections.unmodifiableList(items));
+            evictLocked(page);
+        }
+
+        final int loaded = items.size();
+        mDeliveryExecutor.execute(() -> deliver(offset, loaded));
+    }
+
+    /**
+     * Evicts the pages farthest from the centered one beyond the cap, of two
+     * as far the one behind the scroll. The page just loaded is kept, even if
+     * the center is stale, so that the rows asking for it get to show it
+     *
+     * @param loaded The page just loaded
+     */
+    private void evictLocked(int loaded) {
+        while (mPages.size() > mMaxResidentPages) {
+            int farthest = mCenterPage;
+            int farthestScore = -1;
+
+            for (int page : mPages.keySet()) {
+                if (page == loaded) {
+                    continue;
+                }
+
+                final int distance = page - mCenterPage;
+                final int score = 2 * Math.abs(distance) + (distance * mDirection < 0 ? 1 : 0);
+
+                if (score > farthestScore) {
+                    farthest = page;
+                    farthestScore = score;
+                }
+            }
+
+            mPages.remove(farthest);
+        }
+    }
+
+    /**
+     * Announces a loaded page, correcting an estimated count first. A page evicted by
+     * later loads in the meantime is not announced, its rows would only ask for it again.
+     * Runs on the delivery thread
+     */
+    private void deliver(int offset, int loaded) {
+        final OnChangeListener listener = mListener;
+
+        if (listener == null) {
+            return;
+        }
+
+        final int previous = mCount;
+
+        if (!mIsCountExact) {
+            if (loaded < mPageSize) {
+                // A short page is the last one
+                mCount = offset + loaded;
+                mIsCountExact = true;
+            } else if (offset + loaded >= previous) {
+                // Results go on past the estimate, leave room for one more page
+                mCount = offset + loaded + mPageSize;
+            }
+        }
+
+        if (mCount != previous) {
+            listener.onCountChanged(previous, mCount);
+        }
+
+        final int visible = Math.min(loaded, mCount - offset);
+
+        if (visible > 0 && isLoaded(offset)) {
+            listener.onRangeLoaded(offset, visible);
+        }
+    }
+
+    /**
+     * Loads the items of a page. Called on the load executor, may block
+     *
+     * @param <T> Type of the suggestions
+     */
+    public interface PageLoader<T> {
+
+        /**
+         * @param offset Position of the first item
+         * @param count  Number of items asked for
+         * @return The items, fewer than asked for only at the end of the results
+         * @throws Exception If the page cannot be loaded, it is retried on the next access
+         */
+        @NonNull
+        List<T> load(int offset, int count) throws Exception;
+
+    }
+
+    /**
+     * Told about changes on the delivery thread
+     */
+    interface OnChangeListener {
+
+        void onRangeLoaded(int from, int count);
+
+        void onCountChanged(int previous, int count);
+
+    }
+
+    /**
+     * Builder for {@link PagedResults}
+     *
+     * @param <T> Type of the suggestions
+     */
+    public static final class Builder<T> {
+
+        private final PageLoader<T> mLoader;
+        private final int mCount;
+        private boolean mIsCountExact = true;
+        private Executor mLoadExecutor;
+        private Executor mDeliveryExecutor;
+        private int mPageSize = DEFAULT_PAGE_SIZE;
+        private int mMaxResidentPages = DEFAULT_MAX_RESIDENT_PAGES;
+        private int mPrefetchPages = DEFAULT_PREFETCH_PAGES;
+
+        /**
+         * @param loader   Loads the pages
+         * @param count    Total number of results, or an estimate of it
+         * @param executor Runs the loader, off the main thread
+         */
+        public Builder(@NonNull PageLoader<T> loader,
+                       @IntRange(from = 0) int count,
+                       @NonNull Executor executor) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Count cannot be negative");
+            }
+            mLoader = loader;
+            mCount = count;
+            mLoadExecutor = executor;
+        }
+
+        /**
+         * @param isCountExact Whether the count is exact, true by default. An estimate
+         *                     is corrected as pages show where the results end
+         */
+        public Builder<T> setCountExact(boolean isCountExact) {
+            mIsCountExact = isCountExact;
+            return this;
+        }
+
+        /**
+         * @param pageSize Number of items per page, {@link #DEFAULT_PAGE_SIZE} by default
+         */
+        public Builder<T> setPageSize(@IntRange(from = 1) int pageSize) {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("Page size must be at least 1");
+            }
+            mPageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * @param prefetchPages Number of pages loaded ahead in the direction of the
+         *                      scroll, {@link #DEFAULT_PREFETCH_PAGES} by default
+         */
+        public Builder<T> setPrefetchPages(@IntRange(from = 0) int prefetchPages) {
+            if (prefetchPages < 0) {
+                throw new IllegalArgumentException("Prefetch pages cannot be negative");
+            }
+            mPrefetchPages = prefetchPages;
+            return this;
+        }
+
+        /**
+         * @param maxResidentPages Cap on the pages held in memory, which must fit the centered
+         *                         page, its neighbours and the prefetched ones.
+         *                         {@link #DEFAULT_MAX_RESIDENT_PAGES} by default
+         */
+        public Builder<T> setMaxResidentPages(@IntRange(from = 1) int maxResidentPages) {
+            mMaxResidentPages = maxResidentPages;
+            return this;
+        }
+
+        /**
+         * @param executor Announces changes, the main thread by default
+         */
+        public Builder<T> setDeliveryExecutor(@NonNull Executor executor) {
+            mDeliveryExecutor = executor;
+            return this;
+        }
+
+        public PagedResults<T> build() {
+            if (mMaxResidentPages < 1 + 2 * NEIGHBOUR_PAGES + mPrefetchPages) {
+                throw new IllegalArgumentException("Cap of " + mMaxResidentPages
+                        + " pages cannot hold the pages around the center and " + mPrefetchPages + " prefetched");
+            }
+            return new PagedResults<>(this);
+        }
+
+    }
+
+}
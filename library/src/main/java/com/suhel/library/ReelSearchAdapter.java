@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Base {@link RecyclerView.Adapter} of the suggestions a {@link ReelSearchView}
+ * looks up through its {@link SuggestionSource}. The view hands it every batch
+ * of results as it arrives: the first batch of a query replaces the suggestions
+ * and the following ones are inserted at the end without touching the rows
+ * already on screen.
+ * <p>
+ * A batch of {@link PagedResults} is not copied but paged in as the reel
+ * moves, its rows are bound with {@literal null} placeholders until their
+ * page arrives
+ *
+ * @param <T>  Type of the suggestions
+ * @param <VH> Type of the view holders
+ */
+public abstract class ReelSearchAdapter<T, VH extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<VH> {
+
+    /**
+     * Stores the current batches, replaced whole on every change
+     */
+    @NonNull
+    private BatchedList<T> mBatches = BatchedList.empty();
+
+    /**
+     * Stores the current suggestions, either the batches or the paged results
+     */
+    @NonNull
+    private List<T> mItems = mBatches;
+
+    /**
+     * Stores the paged result set being shown, if any
+     */
+    @Nullable
+    private PagedResults<T> mPagedResults;
+
+    /**
+     * Rebinds the rows of the pages as they arrive
+     */
+    private final PagedResults.OnChangeListener mPagedResultsListener = new PagedResults.OnChangeListener() {
+
+        @Override
+        public void onRangeLoaded(int from, int count) {
+            notifyItemRangeChanged(from, count);
+        }
+
+        @Override
+        public void onCountChanged(int previous, int count) {
+            if (count < previous) {
+                notifyItemRangeRemoved(count, previous - count);
+            } else {
+                notifyItemRangeInserted(previous, count - previous);
+            }
+        }
+
+    };
+
+    /**
+     * @param position Position of the suggestion
+     * @return The suggestion, {@literal null} for a row of {@link PagedResults} still loading
+     */
+    public T getItem(int position) {
+        return mItems.get(position);
+    }
+
+    /**
+     * @return The current suggestions, read only. Batched results are a snapshot
+     * which later batches do not change, safe to hand over to another thread.
+     * {@link PagedResults} are returned as is and change as pages load, are
+     * evicted and have their count corrected, so they are only safe to read on
+     * the main thread between changes
+     */
+    @NonNull
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mItems.size();
+    }
+
+    /**
+     * Replaces the suggestions with the first batch of a new result set
+     *
+     * @param batch The batch
+     */
+    public void replaceItems(@NonNull List<T> batch) {
+        if (mPagedResults != null) {
+            mPagedResults.release();
+            mPagedResults = null;
+        }
+
+        if (batch instanceof PagedResults) {
+            mPagedResults = (PagedResults<T>) batch;
+            mPagedResults.setOnChangeListener(mPagedResultsListener);
+            mBatches = BatchedList.empty();
+            mItems = mPagedResults;
+        } else {
+            mBatches = BatchedList.<T>empty().append(batch);
+            mItems = mBatches;
+        }
+
+        onItemsReplaced(mItems);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Appends a further batch of the current result set
+     *
+     * @param batch The batch
+     * @throws IllegalStateException If the result set is {@link PagedResults}, which are complete
+     */
+    public void appendItems(@NonNull List<T> batch) {
+        if (mPagedResults != null) {
+            throw new IllegalStateException("Paged results cannot be appended to");
+        }
+
+        final int start = mBatches.size();
+        mBatches = mBatches.append(batch);
+        mItems = mBatches;
+
+        if (!batch.isEmpty()) {
+            notifyItemRangeInserted(start, batch.size());
+        }
+    }
+
+    /**
+     * Pages in the rows around the position centered in the reel, if the
+     * suggestions are {@link PagedResults}
+     *
+     * @param position  The centered position
+     * @param direction Sign of the scroll, positive towards the end
+     */
+    void onCenterChanged(int position, int direction) {
+        if (mPagedResults != null) {
+            mPagedResults.onCenterChanged(position, direction);
+        }
+    }
+
+    /**
+     * Called when a new result set starts, before the rows are rebound
+     *
+     * @param items The new suggestions
+     */
+    protected void onItemsReplaced(@NonNull List<T> items) {
+
+    }
+
+}
@@ -6,6 +6,7 @@ import android.support.annotation.Nullable;
 import android.support.v7.widget.LinearSnapHelper;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import android.view.Display;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
@@ -17,6 +18,11 @@ import android.widget.EditText;
  */
 public class ReelSearchView extends ViewGroup {
 
+    /**
+     * Refresh rate assumed when the display is not known yet
+     */
+    private static final float DEFAULT_REFRESH_RATE = 60.0f;
+
     /**
      * Stores the {@link RecyclerView} that displays the suggestions list
      */
@@ -39,6 +45,66 @@ public class ReelSearchView extends ViewGroup {
      */
     private LinearSnapHelper mLinearSnapHelper;
 
+    /**
+     * Stores the {@link ViewHolderPrewarmer} used to inflate
+     * holders ahead of the first layout
+     */
+    private ViewHolderPrewarmer mViewHolderPrewarmer;
+
+    /**
+     * Stores the {@link FrameMonitor}, created once a
+     * {@link FrameMonitor.OnJankFrameListener} is set
+     */
+    private FrameMonitor mFrameMonitor;
+
+    /**
+     * Stores the pipeline from the {@link EditText} to the adapter,
+     * created once a {@link SuggestionSource} is set
+     */
+    private SuggestionPipeline<?> mSuggestionPipeline;
+
+    /**
+     * Stores the listener told about every update of the suggestions
+     */
+    private OnSuggestionsUpdatedListener mOnSuggestionsUpdatedListener;
+
+    /**
+     * Stores the listener told about every query taken from the text
+     */
+    private OnQueryListener mOnQueryListener;
+
+    /**
+     * Runs the {@link FrameMonitor} only while the reel is in motion
+     */
+    private final RecyclerView.OnScrollListener mFrameMonitorScrollListener = new RecyclerView.OnScrollListener() {
+
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                mFrameMonitor.stop();
+            } else {
+                mFrameMonitor.start();
+            }
+        }
+
+    };
+
+    /**
+     * Pages in {@link PagedResults} around the centered row, ahead of the scroll
+     */
+    private final RecyclerView.OnScrollListener mPagingScrollListener = new RecyclerView.OnScrollListener() {
+
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            final RecyclerView.Adapter adapter = recyclerView.getAdapter();
+
+            if (adapter instanceof ReelSearchAdapter) {
+                ((ReelSearchAdapter<?, ?>) adapter).onCenterChanged(mLayoutManager.getSelection(), Integer.signum(dy));
+            }
+        }
+
+    };
+
     public ReelSearchView(Context context) {
         super(context);
     }
@@ -81,8 +147,37 @@ public class ReelSearchView extends ViewGroup {
         mLayoutManager = new CenteredLayoutManager();
         mLayoutManager.setChildTransformer(new AlphaChildTransformer());
         mRecyclerView.setLayoutManager(mLayoutManager);
+        mRecyclerView.addOnScrollListener(mPagingScrollListener);
         mLinearSnapHelper = new LinearSnapHelper();
         mLinearSnapHelper.attachToRecyclerView(mRecyclerView);
+        mViewHolderPrewarmer = new ViewHolderPrewarmer();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        if (mFrameMonitor != null) {
+            mFrameMonitor.setRefreshRate(getRefreshRate());
+        }
+
+        if (mSuggestionPipeline != null) {
+            mSuggestionPipeline.start();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mViewHolderPrewarmer.cancel();
+
+        if (mFrameMonitor != null) {
+            mFrameMonitor.stop();
+        }
+
+        if (mSuggestionPipeline != null) {
+            mSuggestionPipeline.stop();
+        }
     }
 
     @Override
@@ -141,6 +236,16 @@ public class ReelSearchView extends ViewGroup {
         getLayoutManager().setOnSelectionChangedListener(listener);
     }
 
+    /**
+     * Sets the {@link CenteredLayoutManager.OnSelectionScrolledListener}
+     * of the associated {@link CenteredLayoutManager}.
+     *
+     * @param listener The {@link CenteredLayoutManager.OnSelectionScrolledListener} to be set
+     */
+    public void setOnSelectionScrolledListener(@Nullable CenteredLayoutManager.OnSelectionScrolledListener listener) {
+        getLayoutManager().setOnSelectionScrolledListener(listener);
+    }
+
     /**
      * Returns the position of item highlighted in the middle of the
      * screen from the associated {@link CenteredLayoutManager}
@@ -151,4 +256,153 @@ public class ReelSearchView extends ViewGroup {
         return getLayoutManager().getSelection();
     }
 
+    /**
+     * Turns on frame monitoring while the reel scrolls or flings. Every frame over
+     * the budget of the display is reported with the time spent rendering, recycling,
+     * transforming and binding children during it
+     *
+     * @param listener The {@link FrameMonitor.OnJankFrameListener} to report to,
+     *                 {@literal null} to turn monitoring off
+     */
+    public void setOnJankFrameListener(@Nullable FrameMonitor.OnJankFrameListener listener) {
+        if (listener != null) {
+            if (mFrameMonitor == null) {
+                mFrameMonitor = new FrameMonitor(getRefreshRate());
+                mRecyclerView.addOnScrollListener(mFrameMonitorScrollListener);
+                mLayoutManager.setFrameMonitor(mFrameMonitor);
+            }
+
+            mFrameMonitor.setOnJankFrameListener(listener);
+        } else if (mFrameMonitor != null) {
+            mFrameMonitor.stop();
+            mRecyclerView.removeOnScrollListener(mFrameMonitorScrollListener);
+            mLayoutManager.setFrameMonitor(null);
+            mFrameMonitor = null;
+        }
+    }
+
+    /**
+     * Lets the view run the whole search: the text typed is coalesced into at
+     * most one query per frame and sent to the source only when changed, the
+     * previous request is cancelled and the batches of results are applied to
+     * the adapter, which is set on the {@link RecyclerView}, once per frame.
+     * Results of superseded requests never reach the adapter
+     *
+     * @param source  The {@link SuggestionSource} to query, {@literal null} to stop querying
+     * @param adapter The {@link ReelSearchAdapter} showing the suggestions
+     * @param <T>     Type of the suggestions
+     */
+    public <T> void setSuggestionSource(@Nullable SuggestionSource<T> source,
+                                        @NonNull ReelSearchAdapter<T, ?> adapter) {
+        if (mSuggestionPipeline != null) {
+            mSuggestionPipeline.stop();
+            mSuggestionPipeline = null;
+        }
+
+        if (mRecyclerView.getAdapter() != adapter) {
+            mRecyclerView.setAdapter(adapter);
+        }
+
+        if (source != null) {
+            final SuggestionPipeline<T> pipeline = new SuggestionPipeline<>(mEditText, source, adapter);
+            pipeline.setListener(mOnSuggestionsUpdatedListener);
+            pipeline.setQueryListener(mOnQueryListener);
+            mSuggestionPipeline = pipeline;
+
+            if (isAttachedToWindow()) {
+                pipeline.start();
+            }
+        }
+    }
+
+    /**
+     * Sends the current query to the {@link SuggestionSource} again,
+     * for example once the source has finished loading its data
+     */
+    public void refreshSuggestions() {
+        if (mSuggestionPipeline != null && isAttachedToWindow()) {
+            mSuggestionPipeline.refresh();
+        }
+    }
+
+    /**
+     * Sets the {@link OnSuggestionsUpdatedListener} told about every
+     * update the {@link SuggestionSource} makes to the suggestions
+     *
+     * @param listener The listener, {@literal null} to remove it
+     */
+    public void setOnSuggestionsUpdatedListener(@Nullable OnSuggestionsUpdatedListener listener) {
+        mOnSuggestionsUpdatedListener = listener;
+
+        if (mSuggestionPipeline != null) {
+            mSuggestionPipeline.setListener(listener);
+        }
+    }
+
+    /**
+     * Sets the {@link OnQueryListener} told about every query taken from the text,
+     * including those not sent to the {@link SuggestionSource}
+     *
+     * @param listener The listener, {@literal null} to remove it
+     */
+    public void setOnQueryListener(@Nullable OnQueryListener listener) {
+        mOnQueryListener = listener;
+
+        if (mSuggestionPipeline != null) {
+            mSuggestionPipeline.setQueryListener(listener);
+        }
+    }
+
+    /**
+     * @return Refresh rate of the display showing the view, 60Hz if unknown
+     */
+    private float getRefreshRate() {
+        final Display display = getDisplay();
+        return display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+    }
+
+    /**
+     * Inflates holders of the given view type while the main thread is idle
+     * and keeps them in the {@link android.support.v7.widget.RecyclerView.RecycledViewPool}
+     * so that the first set of results is laid out without inflation.
+     * Call it right after setting the adapter, before the first query returns
+     *
+     * @param viewType The view type of the holders to inflate
+     * @param count    The number of holders, typically the number of rows visible
+     *                 on screen plus a couple for scrolling
+     */
+    public void prewarmViewHolders(int viewType, int count) {
+        mViewHolderPrewarmer.prewarm(mRecyclerView, viewType, count);
+    }
+
+    /**
+     * Listener to be notified whenever the suggestions are updated
+     * by the {@link SuggestionSource}, on the main thread
+     */
+    public interface OnSuggestionsUpdatedListener {
+
+        /**
+         * @param query      The query the suggestions are for
+         * @param count      Number of suggestions shown so far
+         * @param isComplete Whether all the batches of the query have arrived
+         */
+        void onSuggestionsUpdated(@NonNull String query, int count, boolean isComplete);
+
+    }
+
+    /**
+     * Listener to be notified, on the main thread, whenever the text typed is
+     * taken up as a query, at most once per frame
+     */
+    public interface OnQueryListener {
+
+        /**
+         * @param query  The trimmed text
+         * @param isSent Whether it was sent to the {@link SuggestionSource}, which
+         *               it is not when empty or unchanged since the last query
+         */
+        void onQuery(@NonNull String query, boolean isSent);
+
+    }
+
 }
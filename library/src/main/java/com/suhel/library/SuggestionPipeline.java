@@ -0,0 +1,275 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import android.widget.EditText;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connects the {@link EditText} of a {@link ReelSearchView} to a {@link SuggestionSource}
+ * and the results back to a {@link ReelSearchAdapter}.
+ * <p>
+ * Keystrokes are coalesced by a {@link FrameTextCoalescer} into at most one query
+ * per frame and only a changed query is sent, cancelling the previous one. Batches
+ * are collected from whichever thread delivers them and applied to the adapter
+ * together on the next frame, while those of superseded requests are dropped
+ *
+ * @param <T> Type of the suggestions
+ */
+final class SuggestionPipeline<T> implements FrameTextCoalescer.OnFrameTextListener, SuggestionSource.Callback<T> {
+
+    /**
+     * Request id meaning no request is running
+     */
+    private static final long NO_REQUEST = 0;
+
+    @NonNull
+    private final FrameTextCoalescer mTextCoalescer;
+
+    @NonNull
+    private final SuggestionSource<T> mSource;
+
+    @NonNull
+    private final ReelSearchAdapter<T, ?> mAdapter;
+
+    @Nullable
+    private ReelSearchView.OnSuggestionsUpdatedListener mListener;
+
+    @Nullable
+    private ReelSearchView.OnQueryListener mQueryListener;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+
+    /**
+     * Stores the last query sent, null before the first one
+     */
+    @Nullable
+    private String mQuery;
+
+    private long mLastRequestId = NO_REQUEST;
+
+    // Guarded by mPendingLock, shared with the delivering threads
+    private final Object mPendingLock = new Object();
+
+    /**
+     * Id of the request whose results are accepted
+     */
+    private long mCurrentRequestId = NO_REQUEST;
+    private final List<List<T>> mPendingBatches = new ArrayList<>();
+
+    /**
+     * Batches taken out of {@link #mPendingBatches} to be applied outside the lock
+     */
+    private final List<List<T>> mApplyingBatches = new ArrayList<>();
+    private boolean mIsPendingLast;
+    private boolean mIsApplyPending;
+
+    /**
+     * Whether the next batch applied starts a new result set
+     */
+    private boolean mIsReplacePending;
+
+    private final Choreographer.FrameCallback mApplyFrame = frameTimeNanos -> applyPending();
+
+    private final Runnable mScheduleApply = () -> mChoreographer.postFrameCallback(mApplyFrame);
+
+    SuggestionPipeline(@NonNull EditText editText,
+                       @NonNull SuggestionSource<T> source,
+                       @NonNull ReelSearchAdapter<T, ?> adapter) {
+        mTextCoalescer = new FrameTextCoalescer(editText, this);
+        mSource = source;
+        mAdapter = adapter;
+    }
+
+    void setListener(@Nullable ReelSearchView.OnSuggestionsUpdatedListener listener) {
+        mListener = listener;
+    }
+
+    void setQueryListener(@Nullable ReelSearchView.OnQueryListener listener) {
+        mQueryListener = listener;
+    }
+
+    /**
+     * Starts following the text, querying for whatever it holds already
+     */
+    void start() {
+        mTextCoalescer.start();
+        mTextCoalescer.flush(true);
+    }
+
+    /**
+     * Stops following the text and cancels the running request
+     */
+    void stop() {
+        mTextCoalescer.stop();
+        cancelCurrent();
+        mQuery = null;
+    }
+
+    /**
+     * Sends the current query again, such as once the source has new data
+     */
+    void refresh() {
+        mTextCoalescer.flush(true);
+    }
+
+    @Override
+    public void onFrameText(@NonNull String text, boolean isChanged) {
+        if (isChanged) {
+            sendQuery(text);
+        } else {
+            notifyQuery(text, false);
+        }
+    }
+
+    @Override
+    public void onResults(long requestId, @NonNull List<T> batch, boolean isLast) {
+        final boolean schedule;
+
+        synchronized (mPendingLock) {
+            if (requestId != mCurrentRequestId) {
+                return;
+            }
+
+            mPendingBatches.add(batch);
+            mIsPendingLast |= isLast;
+            schedule = !mIsApplyPending;
+            mIsApplyPending = true;
+        }
+
+        if (schedule) {
+            mMainHandler.post(mScheduleApply);
+        }
+    }
+
+    @Override
+    public void onError(long requestId, @NonNull Throwable error) {
+        onResults(requestId, new ArrayList<T>(0), true);
+    }
+
+    /**
+     * Cancels the running request and sends a new query
+     *
+     * @param query The trimmed text
+     */
+    private void sendQuery(@NonNull String query) {
+        cancelCurrent();
+        mQuery = query;
+        mIsReplacePending = true;
+
+        if (mQuery.isEmpty()) {
+            notifyQuery(mQuery, false);
+            mAdapter.replaceItems(new ArrayList<T>(0));
+            notifyListener(true);
+            return;
+        }
+
+        final long requestId = ++mLastRequestId;
+
+        synchronized (mPendingLock) {
+            mCurrentRequestId = requestId;
+        }
+
+        notifyQuery(mQuery, true);
+        mSource.query(requestId, mQuery, this);
+    }
+
+    /**
+     * Cancels the running request and drops its undelivered batches
+     */
+    private void cancelCurrent() {
+        final long requestId;
+
+        synchronized (mPendingLock) {
+            requestId = mCurrentRequestId;
+            mCurrentRequestId = NO_REQUEST;
+            mPendingBatches.clear();
+            mIsPendingLast = false;
+        }
+
+        if (requestId != NO_REQUEST) {
+            mSource.cancel(requestId);
+        }
+    }
+
+    /**
+     * Applies the batches collected since the last frame in one go
+     */
+    private void applyPending() {
+        final boolean isLast;
+        final int count;
+
+        synchronized (mPendingLock) {
+            mIsApplyPending = false;
+            isLast = mIsPendingLast;
+            mApplyingBatches.addAll(mPendingBatches);
+            mPendingBatches.clear();
+            mIsPendingLast = false;
+
+            // Nothing left to cancel
+            if (isLast) {
+                mCurrentRequestId = NO_REQUEST;
+            }
+        }
+
+        count = mApplyingBatches.size();
+
+        for (int i = 0; i < count; i++) {
+            if (mIsReplacePending) {
+                mAdapter.replaceItems(mApplyingBatches.get(i));
+                mIsReplacePending = false;
+            } else {
+                mAdapter.appendItems(mApplyingBatches.get(i));
+            }
+        }
+
+        mApplyingBatches.clear();
+
+        if (count > 0) {
+            notifyListener(isLast);
+        }
+    }
+
+    private void notifyQuery(@NonNull String query, boolean isSent) {
+        if (mQueryListener != null) {
+            mQueryListener.onQuery(query, isSent);
+        }
+    }
+
+    private void notifyListener(boolean isComplete) {
+        if (mListener != null) {
+            mListener.onSuggestionsUpdated(mQuery, mAdapter.getItemCount(), isComplete);
+        }
+    }
+
+}
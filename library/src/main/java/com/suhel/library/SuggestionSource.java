@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Looks up suggestions for the queries typed into a {@link ReelSearchView}.
+ * <p>
+ * Every query comes with a request id, increasing with every query. Results may
+ * be delivered in several batches from any thread, the first batch replacing
+ * the suggestions on screen and the others being appended, so that the first
+ * screenful shows up before the whole result set is ready. Results of requests
+ * which have been superseded or cancelled are dropped by the view
+ *
+ * @param <T> Type of the suggestions
+ */
+public interface SuggestionSource<T> {
+
+    /**
+     * Starts looking up suggestions. Called on the main thread, must not block
+     *
+     * @param requestId Id of the request, to be passed back with its results
+     * @param query     The trimmed query, never empty
+     * @param callback  Receives the results of the request
+     */
+    void query(long requestId, @NonNull String query, @NonNull Callback<T> callback);
+
+    /**
+     * Stops working on a request which is no longer needed, because a newer
+     * query has been typed or the view has gone away. Called on the main thread
+     *
+     * @param requestId Id of the request
+     */
+    void cancel(long requestId);
+
+    /**
+     * Receives the results of a request. Safe to call from any thread
+     *
+     * @param <T> Type of the suggestions
+     */
+    interface Callback<T> {
+
+        /**
+         * @param requestId Id of the request the results belong to
+         * @param batch     The next batch of suggestions, not to be modified afterwards
+         * @param isLast    Whether no more batches follow for the request
+         */
+        void onResults(long requestId, @NonNull List<T> batch, boolean isLast);
+
+        /**
+         * Ends the request, keeping whatever batches were delivered
+         *
+         * @param requestId Id of the request that failed
+         * @param error     The cause
+         */
+        void onError(long requestId, @NonNull Throwable error);
+
+    }
+
+}
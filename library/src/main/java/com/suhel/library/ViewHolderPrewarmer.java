@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.library;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayDeque;
+
+/**
+ * Inflates {@link android.support.v7.widget.RecyclerView.ViewHolder}s while the
+ * main thread is idle and hands them over to the
+ * {@link android.support.v7.widget.RecyclerView.RecycledViewPool} of a
+ * {@link RecyclerView} so that the first layout does not pay for inflation.
+ * <p>
+ * Holders are inflated on the main thread, one per idle pass, since views such
+ * as data binding layouts keep the {@link Looper} and
+ * {@link android.view.Choreographer} of the thread inflating them to run their
+ * deferred bindings on, which a background thread would either run off the main
+ * thread or never run once it quits
+ */
+public class ViewHolderPrewarmer {
+
+    /**
+     * Size {@link RecyclerView} gives the pool of each view type unless told otherwise
+     */
+    private static final int DEFAULT_POOL_SIZE = 5;
+
+    /**
+     * Stores the inflations still to run, main thread only
+     */
+    private final ArrayDeque<Runnable> mPending = new ArrayDeque<>();
+
+    /**
+     * Whether {@link #mIdleHandler} is queued on the main thread
+     */
+    private boolean mIsIdleHandlerAdded;
+
+    /**
+     * Runs one pending inflation each time the main thread goes idle
+     */
+    private final MessageQueue.IdleHandler mIdleHandler = () -> {
+        final Runnable inflation = mPending.poll();
+
+        if (inflation != null) {
+            inflation.run();
+        }
+
+        final boolean isMorePending = !mPending.isEmpty();
+        mIsIdleHandlerAdded = isMorePending;
+        return isMorePending;
+    };
+
+    /**
+     * Inflates {@code count} holders of the given view type while the main thread
+     * is idle and puts them in the pool of the {@link RecyclerView}. The pool is
+     * sized to hold at least {@code count} holders of that type, and never less
+     * than its default size.
+     * <p>
+     * Must be called from the main thread after the adapter has been set
+     *
+     * @param recyclerView The {@link RecyclerView} whose pool is to be filled
+     * @param viewType     The view type of the holders
+     * @param count        The number of holders to inflate
+     */
+    public void prewarm(@NonNull final RecyclerView recyclerView,
+                        final int viewType,
+                        @IntRange(from = 0) final int count) {
+        final RecyclerView.Adapter adapter = recyclerView.getAdapter();
+
+        if (adapter == null || count <= 0) {
+            return;
+        }
+
+        final RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        // The pool does not tell its current size, hence kept no smaller than the default
+        pool.setMaxRecycledViews(viewType, Math.max(DEFAULT_POOL_SIZE, pool.getRecycledViewCount(viewType) + count));
+
+        for (int i = 0; i < count; i++) {
+            mPending.add(() -> {
+                // Adapter might have been swapped while waiting
+                if (recyclerView.getAdapter() == adapter) {
+                    pool.putRecycledView(adapter.createViewHolder(recyclerView, viewType));
+                }
+            });
+        }
+
+        if (!mIsIdleHandlerAdded) {
+            Looper.myQueue().addIdleHandler(mIdleHandler);
+            mIsIdleHandlerAdded = true;
+        }
+    }
+
+    /**
+     * Drops all the pending inflations. The instance can be reused afterwards.
+     * Main thread only
+     */
+    public void cancel() {
+        mPending.clear();
+
+        if (mIsIdleHandlerAdded) {
+            Looper.myQueue().removeIdleHandler(mIdleHandler);
+            mIsIdleHandlerAdded = false;
+        }
+    }
+
+}
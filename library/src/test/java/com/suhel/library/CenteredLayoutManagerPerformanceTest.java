@@ -0,0 +1,291 @@
+package com.suhel.library;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import com.suhel.testing.AllocationCounter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the work {@link CenteredLayoutManager} does per scrolled row and per
+ * layout pass, so that regressions in the detach, render and recycle cycle
+ * fail the build instead of showing up as dropped frames
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class CenteredLayoutManagerPerformanceTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 1000;
+    private static final int ROW_HEIGHT = 100;
+    private static final int ITEM_COUNT = 500;
+
+    /**
+     * Most rows that can be on screen at once, including the partially visible ones
+     */
+    private static final int MAX_VISIBLE_ROWS = HEIGHT / ROW_HEIGHT + 2;
+
+    /**
+     * Most rows a single scroll lays out, a screenful and one cut in two by the edges
+     */
+    private static final int MAX_LAID_OUT_ROWS = HEIGHT / ROW_HEIGHT + 1;
+
+    /**
+     * Size of the view cache of {@link RecyclerView}, holders parked there
+     * cannot be reused for other positions without a new holder
+     */
+    private static final int VIEW_CACHE_SIZE = 2;
+
+    /**
+     * Pixels scrolled per call, roughly what a slow fling moves per frame
+     */
+    private static final int SCROLL_STEP = 10;
+
+    private static final int SCROLLED_ROWS = 200;
+
+    /**
+     * Bound on bytes allocated per scrolled row, ten scroll calls and a bind,
+     * with room for Robolectric's own bookkeeping. An object per child per
+     * scroll call breaks it
+     */
+    private static final long ALLOCATED_BYTES_PER_ROW_LIMIT = 4 * 1024;
+
+    private RecyclerView recyclerView;
+    private CountingAdapter adapter;
+    private CenteredLayoutManager layoutManager;
+    private int transforms;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        recyclerView = new RecyclerView(context);
+        adapter = new CountingAdapter(ITEM_COUNT);
+        layoutManager = new CenteredLayoutManager();
+        layoutManager.setChildTransformer((child, index, screenPosition, centerOffset) -> transforms++);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+        layout();
+    }
+
+    @Test
+    public void initialLayout_createsAndBindsOnlyVisibleRows() {
+        assertTrue("Created " + adapter.created, adapter.created <= MAX_VISIBLE_ROWS);
+        assertTrue("Bound " + adapter.bound, adapter.bound <= MAX_VISIBLE_ROWS);
+        assertTrue(recyclerView.getChildCount() <= MAX_VISIBLE_ROWS);
+    }
+
+    @Test
+    public void scroll_bindsOncePerRowAndStopsCreating() {
+        scrollRows(SCROLLED_ROWS / 2);
+
+        // Only the pool and the view cache have to fill up
+        assertTrue("Created " + adapter.created, adapter.created <= MAX_VISIBLE_ROWS + VIEW_CACHE_SIZE + 1);
+
+        adapter.reset();
+        scrollRows(SCROLLED_ROWS / 2);
+
+        assertEquals("Steady state scroll must not create holders", 0, adapter.created);
+        assertTrue("Bound " + adapter.bound, adapter.bound <= SCROLLED_ROWS / 2 + VIEW_CACHE_SIZE);
+    }
+
+    @Test
+    public void scroll_transformsEachLaidOutRowOncePerStep() {
+        scrollRows(SCROLLED_ROWS / 2);
+        final int steps = SCROLLED_ROWS / 2 * ROW_HEIGHT / SCROLL_STEP;
+
+        for (int i = 0; i < steps; i++) {
+            transforms = 0;
+            recyclerView.scrollBy(0, SCROLL_STEP);
+
+            assertEquals(recyclerView.getChildCount(), transforms);
+            assertTrue("Transformed " + transforms, transforms <= MAX_LAID_OUT_ROWS);
+        }
+    }
+
+    @Test
+    public void scroll_doesNotRemeasureAttachedRows() {
+        scrollRows(SCROLLED_ROWS / 2);
+        adapter.reset();
+        final int steps = SCROLLED_ROWS / 2 * ROW_HEIGHT / SCROLL_STEP;
+
+        for (int i = 0; i < steps; i++) {
+            recyclerView.scrollBy(0, SCROLL_STEP);
+
+            for (int child = 0; child < recyclerView.getChildCount(); child++) {
+                final CountingView view = (CountingView) recyclerView.getChildAt(child);
+                assertTrue("Measured " + view.measuresSinceBind + " times", view.measuresSinceBind <= 1);
+            }
+        }
+
+        // Only rows entering the screen are measured
+        assertTrue("Measured " + adapter.measured + ", bound " + adapter.bound, adapter.measured <= adapter.bound);
+    }
+
+    @Test
+    public void scroll_allocationPerRowBounded() {
+        final AllocationCounter counter = AllocationCounter.forCurrentThread();
+        assumeTrue(counter != null);
+
+        // Warm up class loading and pools
+        scrollRows(SCROLLED_ROWS / 2);
+
+        final long before = counter.allocatedBytes();
+        scrollRows(SCROLLED_ROWS / 2);
+        final long perRow = (counter.allocatedBytes() - before) / (SCROLLED_ROWS / 2);
+
+        assertTrue("Allocated " + perRow + " bytes per row", perRow <= ALLOCATED_BYTES_PER_ROW_LIMIT);
+    }
+
+    @Test
+    public void dataSetChange_rebindsVisibleRowsWithoutCreating() {
+        // A data set change invalidates every holder and sends it to the pool,
+        // which has to hold a screenful as ReelSearchView.prewarmViewHolders() sizes it
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(0, MAX_VISIBLE_ROWS + 1);
+        scrollRows(SCROLLED_ROWS / 2);
+        adapter.reset();
+
+        adapter.setItemCount(ITEM_COUNT - 100);
+        layout();
+
+        assertEquals(0, adapter.created);
+        assertTrue("Bound " + adapter.bound, adapter.bound <= MAX_VISIBLE_ROWS);
+    }
+
+    @Test
+    public void rangeChangeAfterDeepScroll_doesNotBindFirstRow() {
+        scrollRows(SCROLLED_ROWS);
+        adapter.reset();
+
+        // As when a page of PagedResults arrives, the first page long evicted
+        adapter.notifyItemRangeChanged(layoutManager.getSelection(), 10);
+        layout();
+
+        assertEquals(0, adapter.firstBound);
+        assertTrue(adapter.bound > 0);
+    }
+
+    @Test
+    public void dataSetShrink_clampsScrollAndLaysOut() {
+        scrollRows(SCROLLED_ROWS);
+
+        adapter.setItemCount(10);
+        layout();
+
+        assertTrue(layoutManager.getSelection() < 10);
+        assertTrue(recyclerView.getChildCount() > 0);
+    }
+
+    @Test
+    public void scrollToPosition_beforeFirstLayoutIsApplied() {
+        recyclerView = new RecyclerView(RuntimeEnvironment.application);
+        layoutManager = new CenteredLayoutManager();
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(new CountingAdapter(ITEM_COUNT));
+
+        layoutManager.scrollToPosition(250);
+        layout();
+
+        assertEquals(250, layoutManager.getSelection());
+    }
+
+    private void layout() {
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private void scrollRows(int rows) {
+        final int steps = rows * ROW_HEIGHT / SCROLL_STEP;
+
+        for (int i = 0; i < steps; i++) {
+            recyclerView.scrollBy(0, SCROLL_STEP);
+        }
+    }
+
+    /**
+     * A fixed height row counting its measure passes
+     */
+    private static class CountingView extends View {
+
+        private final CountingAdapter mAdapter;
+        int measuresSinceBind;
+
+        CountingView(Context context, CountingAdapter adapter) {
+            super(context);
+            mAdapter = adapter;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mAdapter.measured++;
+            measuresSinceBind++;
+            setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), ROW_HEIGHT);
+        }
+
+    }
+
+    /**
+     * An adapter counting holder creation, binding and measuring
+     */
+    private static class CountingAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        int created;
+        int bound;
+        int firstBound;
+        int measured;
+        private int mItemCount;
+
+        CountingAdapter(int itemCount) {
+            mItemCount = itemCount;
+        }
+
+        void setItemCount(int itemCount) {
+            mItemCount = itemCount;
+            notifyDataSetChanged();
+        }
+
+        void reset() {
+            created = 0;
+            bound = 0;
+            firstBound = 0;
+            measured = 0;
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            created++;
+            final View view = new CountingView(parent.getContext(), this);
+            view.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+            bound++;
+            firstBound += position == 0 ? 1 : 0;
+            holder.itemView.setTag(position);
+            ((CountingView) holder.itemView).measuresSinceBind = 0;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItemCount;
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+import com.suhel.library.FrameMonitor.FramePhase;
+import com.suhel.library.FrameMonitor.FrameReport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which frames {@link FrameMonitor} reports as over budget and that
+ * the phase time of each frame is attributed to that frame alone
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class FrameMonitorTest {
+
+    private static final float REFRESH_RATE = 60.0f;
+    private static final long START = 1_000_000_000L;
+
+    private FrameMonitor monitor;
+    private long budget;
+    private List<Snapshot> reports;
+
+    @Before
+    public void setUp() {
+        // Frames are driven by hand with chosen vsync times
+        Robolectric.getForegroundThreadScheduler().pause();
+
+        monitor = new FrameMonitor(REFRESH_RATE);
+        budget = monitor.getBudgetNanos();
+        reports = new ArrayList<>();
+        monitor.setOnJankFrameListener(report -> reports.add(new Snapshot(report)));
+        monitor.start();
+        monitor.doFrame(START);
+    }
+
+    @After
+    public void tearDown() {
+        monitor.stop();
+        Robolectric.getForegroundThreadScheduler().unPause();
+    }
+
+    @Test
+    public void frameWithinJitterAllowance_isNotReported() {
+        monitor.doFrame(START + budget);
+        monitor.doFrame(START + budget + budget * 3 / 2);
+
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    public void frameOverJitterAllowance_isReportedWithDroppedFrames() {
+        monitor.doFrame(START + budget * 3 / 2 + 1);
+        monitor.doFrame(START + budget * 3 / 2 + 1 + budget * 3);
+
+        assertEquals(2, reports.size());
+        assertEquals(budget * 3 / 2 + 1, reports.get(0).frameNanos);
+        assertEquals(budget, reports.get(0).budgetNanos);
+        assertEquals(1, reports.get(0).droppedFrames);
+        assertEquals(2, reports.get(1).droppedFrames);
+    }
+
+    @Test
+    public void phaseTime_attributedToFrameItWasSpentOn() {
+        // Spent on a frame that made it, then dropped
+        monitor.addPhaseTime(FramePhase.RENDER, 40);
+        monitor.doFrame(START + budget);
+
+        monitor.addPhaseTime(FramePhase.BIND, 30);
+        monitor.addPhaseTime(FramePhase.BIND, 20);
+        monitor.addPhaseTime(FramePhase.TRANSFORM, 10);
+        monitor.doFrame(START + budget * 3);
+
+        assertEquals(1, reports.size());
+        final Snapshot report = reports.get(0);
+        assertEquals(0, report.phaseNanos[FramePhase.RENDER.ordinal()]);
+        assertEquals(0, report.phaseNanos[FramePhase.RECYCLE.ordinal()]);
+        assertEquals(10, report.phaseNanos[FramePhase.TRANSFORM.ordinal()]);
+        assertEquals(50, report.phaseNanos[FramePhase.BIND.ordinal()]);
+        assertEquals(FramePhase.BIND, report.slowestPhase);
+    }
+
+    @Test
+    public void restart_doesNotReportTheGapOrEarlierPhaseTime() {
+        monitor.addPhaseTime(FramePhase.RENDER, 40);
+        monitor.stop();
+        monitor.addPhaseTime(FramePhase.RECYCLE, 40);
+
+        monitor.start();
+        monitor.doFrame(START + budget * 10);
+        monitor.doFrame(START + budget * 13);
+
+        assertEquals(1, reports.size());
+        assertEquals(0, reports.get(0).phaseNanos[FramePhase.RENDER.ordinal()]);
+        assertEquals(0, reports.get(0).phaseNanos[FramePhase.RECYCLE.ordinal()]);
+    }
+
+    /**
+     * Copies a report out, as the monitor reuses it
+     */
+    private static class Snapshot {
+
+        final long frameNanos;
+        final long budgetNanos;
+        final int droppedFrames;
+        final long[] phaseNanos = new long[FramePhase.values().length];
+        final FramePhase slowestPhase;
+
+        Snapshot(@NonNull FrameReport report) {
+            frameNanos = report.getFrameNanos();
+            budgetNanos = report.getBudgetNanos();
+            droppedFrames = report.getDroppedFrames();
+            for (FramePhase phase : FramePhase.values()) {
+                phaseNanos[phase.ordinal()] = report.getPhaseNanos(phase);
+            }
+            slowestPhase = report.getSlowestPhase();
+        }
+
+    }
+
+}
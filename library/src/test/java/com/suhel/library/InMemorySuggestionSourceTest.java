@@ -0,0 +1,87 @@
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks matching, batching and cancellation of {@link InMemorySuggestionSource}
+ * along with the {@link BatchedList} the batches end up in
+ */
+public class InMemorySuggestionSourceTest {
+
+    private static final List<String> ITEMS = Arrays.asList("Apple", "apricot", "Banana", "app store", "APPLY", "b");
+
+    @Test
+    public void query_deliversCaseInsensitiveMatchesInBatches() {
+        final RecordingCallback callback = new RecordingCallback();
+        final InMemorySuggestionSource source = new InMemorySuggestionSource(ITEMS, Runnable::run, 2);
+
+        source.query(1, "aPp", callback);
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("app store", "Apple"),
+                Collections.singletonList("APPLY")), callback.batches);
+        assertEquals(Arrays.asList(false, true), callback.lasts);
+    }
+
+    @Test
+    public void query_noMatchDeliversOneEmptyLastBatch() {
+        final RecordingCallback callback = new RecordingCallback();
+        new InMemorySuggestionSource(ITEMS, Runnable::run, 2).query(1, "z", callback);
+
+        assertEquals(Collections.singletonList(Collections.<String>emptyList()), callback.batches);
+        assertEquals(Collections.singletonList(true), callback.lasts);
+    }
+
+    @Test
+    public void cancel_beforeRunningDeliversNothing() {
+        final List<Runnable> queued = new ArrayList<>();
+        final Executor executor = queued::add;
+        final RecordingCallback callback = new RecordingCallback();
+        final InMemorySuggestionSource source = new InMemorySuggestionSource(ITEMS, executor, 2);
+
+        source.query(1, "a", callback);
+        source.cancel(1);
+        queued.get(0).run();
+
+        assertTrue(callback.batches.isEmpty());
+    }
+
+    @Test
+    public void batchedList_appendsWithoutChangingPrevious() {
+        final BatchedList<String> first = BatchedList.<String>empty().append(Arrays.asList("a", "b"));
+        final BatchedList<String> second = first.append(Collections.singletonList("c"));
+
+        assertEquals(Arrays.asList("a", "b"), first);
+        assertEquals(Arrays.asList("a", "b", "c"), second);
+        assertSame(second, second.append(Collections.<String>emptyList()));
+        assertEquals("c", second.get(2));
+    }
+
+    private static class RecordingCallback implements SuggestionSource.Callback<String> {
+
+        final List<List<String>> batches = new ArrayList<>();
+        final List<Boolean> lasts = new ArrayList<>();
+
+        @Override
+        public void onResults(long requestId, @NonNull List<String> batch, boolean isLast) {
+            batches.add(new ArrayList<>(batch));
+            lasts.add(isLast);
+        }
+
+        @Override
+        public void onError(long requestId, @NonNull Throwable error) {
+            throw new AssertionError(error);
+        }
+
+    }
+
+}
@@ -0,0 +1,282 @@
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks placeholders, paging around the center, prefetching, eviction
+ * and count correction of {@link PagedResults}
+ */
+public class PagedResultsTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_RESIDENT_PAGES = 6;
+    private static final int PREFETCH_PAGES = 2;
+
+    /**
+     * Deep enough that materializing the results would not fit the cap many times over
+     */
+    private static final int HUGE_COUNT = 1_000_000;
+
+    private CountingLoader loader;
+    private Queue<Runnable> loads;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() {
+        loader = new CountingLoader(HUGE_COUNT);
+        loads = new ArrayDeque<>();
+        listener = new RecordingListener();
+    }
+
+    @Test
+    public void get_returnsPlaceholderUntilPageLoads() {
+        final PagedResults<String> results = build(HUGE_COUNT, true);
+
+        assertNull(results.get(15));
+        assertNull(results.get(19));
+        runLoads();
+
+        assertEquals("15", results.get(15));
+        assertEquals(1, loader.loads);
+        assertEquals(1, listener.loaded.size());
+        assertArrayEquals(new int[]{10, 10}, listener.loaded.get(0));
+        assertEquals(HUGE_COUNT, results.size());
+    }
+
+    @Test
+    public void onCenterChanged_prefetchesAheadOfScroll() {
+        final PagedResults<String> results = build(HUGE_COUNT, true);
+
+        results.onCenterChanged(505, 1);
+        runLoads();
+
+        // Neighbours on both sides, prefetch only ahead
+        for (int page = 49; page <= 51 + PREFETCH_PAGES; page++) {
+            assertTrue("Page " + page, results.isLoaded(page * PAGE_SIZE));
+        }
+        assertFalse(results.isLoaded(48 * PAGE_SIZE));
+        assertFalse(results.isLoaded((52 + PREFETCH_PAGES) * PAGE_SIZE));
+
+        results.onCenterChanged(505, -1);
+        runLoads();
+
+        assertTrue(results.isLoaded(47 * PAGE_SIZE));
+    }
+
+    @Test
+    public void deepScroll_staysWithinCapAndKeepsCenterLoaded() {
+        final PagedResults<String> results = build(HUGE_COUNT, true);
+
+        for (int position = 0; position < HUGE_COUNT; position += PAGE_SIZE / 2) {
+            results.onCenterChanged(position, 1);
+            runLoads();
+
+            assertTrue(results.getResidentPageCount() <= MAX_RESIDENT_PAGES);
+            assertEquals(String.valueOf(position), results.get(position));
+        }
+
+        // Every page loaded once on the way down
+        assertEquals(HUGE_COUNT / PAGE_SIZE, loader.loads);
+    }
+
+    @Test
+    public void eviction_dropsPagesFarthestFromCenter() {
+        final PagedResults<String> results = build(HUGE_COUNT, true);
+
+        results.onCenterChanged(0, 1);
+        runLoads();
+        results.onCenterChanged(10 * PAGE_SIZE, 1);
+        runLoads();
+
+        assertFalse(results.isLoaded(0));
+        assertTrue(results.isLoaded(10 * PAGE_SIZE));
+        assertNull(results.get(0));
+    }
+
+    @Test
+    public void bindOutsideWindow_keepsLoadedPageWithFullCap() {
+        final PagedResults<String> results = build(HUGE_COUNT, true);
+
+        results.onCenterChanged(0, 1);
+        results.get(4 * PAGE_SIZE);
+        results.get(5 * PAGE_SIZE);
+        runLoads();
+        assertEquals(MAX_RESIDENT_PAGES, results.getResidentPageCount());
+        listener.loaded.clear();
+
+        // Bound far from a center not updated yet, as after scrollToPosition
+        assertNull(results.get(1000));
+        runLoads();
+
+        assertEquals("1000", results.get(1000));
+        assertEquals(MAX_RESIDENT_PAGES, results.getResidentPageCount());
+        assertEquals(1, listener.loaded.size());
+        assertArrayEquals(new int[]{1000, PAGE_SIZE}, listener.loaded.get(0));
+        assertTrue(loads.isEmpty());
+    }
+
+    @Test
+    public void evictedBeforeDelivery_isNotAnnounced() {
+        final Queue<Runnable> deliveries = new ArrayDeque<>();
+        final PagedResults<String> results = new PagedResults.Builder<>(loader, HUGE_COUNT, loads::add)
+                .setPageSize(PAGE_SIZE)
+                .setPrefetchPages(0)
+                .setMaxResidentPages(3)
+                .setDeliveryExecutor(deliveries::add)
+                .build();
+        results.setOnChangeListener(listener);
+
+        // Far page loaded, then evicted by pages around the center before its delivery
+        results.get(1000);
+        runLoads();
+        results.onCenterChanged(0, 0);
+        results.get(2 * PAGE_SIZE);
+        runLoads();
+        assertFalse(results.isLoaded(1000));
+
+        while (!deliveries.isEmpty()) {
+            deliveries.poll().run();
+        }
+
+        for (int[] range : listener.loaded) {
+            assertNotEquals(1000, range[0]);
+        }
+    }
+
+    @Test
+    public void estimatedCount_correctedByShortPage() {
+        loader = new CountingLoader(25);
+        final PagedResults<String> results = build(100, false);
+
+        results.onCenterChanged(0, 1);
+        runLoads();
+
+        assertEquals(25, results.size());
+        assertTrue(results.isCountExact());
+        assertEquals(1, listener.counts.size());
+        assertArrayEquals(new int[]{100, 25}, listener.counts.get(0));
+    }
+
+    @Test
+    public void estimatedCount_grownWhenResultsGoOn() {
+        final PagedResults<String> results = build(15, false);
+
+        results.get(10);
+        runLoads();
+
+        assertEquals(30, results.size());
+        assertFalse(results.isCountExact());
+    }
+
+    @Test
+    public void failedPage_isRetriedOnNextAccess() {
+        final PagedResults<String> results = build(HUGE_COUNT, true);
+        loader.failNext = true;
+
+        assertNull(results.get(0));
+        runLoads();
+        assertNull(results.get(0));
+        runLoads();
+
+        assertEquals("0", results.get(0));
+        assertEquals(2, loader.loads);
+    }
+
+    @Test
+    public void release_dropsPagesLoadedLate() {
+        final PagedResults<String> results = build(HUGE_COUNT, true);
+
+        results.get(0);
+        results.release();
+        runLoads();
+
+        assertEquals(0, results.getResidentPageCount());
+        assertTrue(listener.loaded.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsCapBelowWindow() {
+        new PagedResults.Builder<>(loader, HUGE_COUNT, loads::add)
+                .setPrefetchPages(4)
+                .setMaxResidentPages(6)
+                .build();
+    }
+
+    private PagedResults<String> build(int count, boolean isCountExact) {
+        final PagedResults<String> results = new PagedResults.Builder<>(loader, count, loads::add)
+                .setCountExact(isCountExact)
+                .setPageSize(PAGE_SIZE)
+                .setPrefetchPages(PREFETCH_PAGES)
+                .setMaxResidentPages(MAX_RESIDENT_PAGES)
+                .setDeliveryExecutor(Runnable::run)
+                .build();
+        results.setOnChangeListener(listener);
+        return results;
+    }
+
+    private void runLoads() {
+        Runnable load;
+        while ((load = loads.poll()) != null) {
+            load.run();
+        }
+    }
+
+    /**
+     * Loads the positions themselves as items out of a result set of a fixed size
+     */
+    private static class CountingLoader implements PagedResults.PageLoader<String> {
+
+        private final int mCount;
+        int loads;
+        boolean failNext;
+
+        CountingLoader(int count) {
+            mCount = count;
+        }
+
+        @NonNull
+        @Override
+        public List<String> load(int offset, int count) throws Exception {
+            loads++;
+
+            if (failNext) {
+                failNext = false;
+                throw new Exception("Failed");
+            }
+
+            final List<String> items = new ArrayList<>(count);
+            for (int i = offset; i < Math.min(mCount, offset + count); i++) {
+                items.add(String.valueOf(i));
+            }
+            return items;
+        }
+
+    }
+
+    private static class RecordingListener implements PagedResults.OnChangeListener {
+
+        final List<int[]> loaded = new ArrayList<>();
+        final List<int[]> counts = new ArrayList<>();
+
+        @Override
+        public void onRangeLoaded(int from, int count) {
+            loaded.add(new int[]{from, count});
+        }
+
+        @Override
+        public void onCountChanged(int previous, int count) {
+            counts.add(new int[]{previous, count});
+        }
+
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.suhel.library;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link SuggestionPipeline} sends one query per frame of typing,
+ * drops the results of superseded requests and applies the batches collected
+ * during a frame together
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SuggestionPipelineTest {
+
+    private EditText editText;
+    private RecordingSource source;
+    private TestAdapter adapter;
+    private SuggestionPipeline<String> pipeline;
+    private List<String> queries;
+    private List<Boolean> sent;
+    private List<Integer> updates;
+
+    @Before
+    public void setUp() {
+        editText = new EditText(RuntimeEnvironment.application);
+        source = new RecordingSource();
+        adapter = new TestAdapter();
+        pipeline = new SuggestionPipeline<>(editText, source, adapter);
+        queries = new ArrayList<>();
+        sent = new ArrayList<>();
+        updates = new ArrayList<>();
+        pipeline.setQueryListener((query, isSent) -> {
+            queries.add(query);
+            sent.add(isSent);
+        });
+        pipeline.setListener((query, count, isComplete) -> updates.add(count));
+        pipeline.start();
+        runFrames();
+        queries.clear();
+        sent.clear();
+        updates.clear();
+        adapter.replaced = 0;
+    }
+
+    @Test
+    public void typingWithinFrame_sendsOneQuery() {
+        editText.setText("a");
+        editText.setText("ap");
+        editText.setText(" app ");
+        assertTrue(source.queries.isEmpty());
+
+        runFrames();
+
+        assertEquals(Collections.singletonList("app"), source.queries);
+        assertEquals(Collections.singletonList(true), sent);
+    }
+
+    @Test
+    public void requestIds_increaseAndSupersededRequestIsCancelled() {
+        editText.setText("a");
+        runFrames();
+        editText.setText("ab");
+        runFrames();
+
+        assertEquals(2, source.requestIds.size());
+        assertTrue(source.requestIds.get(1) > source.requestIds.get(0));
+        assertEquals(Collections.singletonList(source.requestIds.get(0)), source.cancelled);
+    }
+
+    @Test
+    public void unchangedOrEmptyText_isReportedButNotSent() {
+        editText.setText("app");
+        runFrames();
+        editText.setText("app ");
+        runFrames();
+        editText.setText("");
+        runFrames();
+
+        assertEquals(Collections.singletonList("app"), source.queries);
+        assertEquals(Arrays.asList("app", "app", ""), queries);
+        assertEquals(Arrays.asList(true, false, false), sent);
+    }
+
+    @Test
+    public void staleResults_areDropped() {
+        editText.setText("a");
+        runFrames();
+        final long stale = source.requestIds.get(0);
+        editText.setText("ab");
+        runFrames();
+        final long current = source.requestIds.get(1);
+
+        source.callbacks.get(0).onResults(stale, Collections.singletonList("a1"), true);
+        source.callbacks.get(1).onResults(current, Collections.singletonList("ab1"), true);
+        runFrames();
+
+        assertEquals(Collections.singletonList("ab1"), adapter.getItems());
+    }
+
+    @Test
+    public void batches_appliedTogetherOnNextFrame() {
+        editText.setText("a");
+        runFrames();
+        final long requestId = source.requestIds.get(0);
+        final SuggestionSource.Callback<String> callback = source.callbacks.get(0);
+
+        callback.onResults(requestId, Arrays.asList("a1", "a2"), false);
+        callback.onResults(requestId, Collections.singletonList("a3"), true);
+        assertEquals(0, adapter.getItemCount());
+
+        runFrames();
+
+        assertEquals(Arrays.asList("a1", "a2", "a3"), adapter.getItems());
+        assertEquals(1, adapter.replaced);
+        assertEquals(Collections.singletonList(3), updates);
+
+        // Completed requests are not cancelled by the next query
+        editText.setText("ab");
+        runFrames();
+        assertTrue(source.cancelled.isEmpty());
+    }
+
+    @Test
+    public void stop_dropsUndeliveredResults() {
+        editText.setText("a");
+        runFrames();
+
+        pipeline.stop();
+        source.callbacks.get(0).onResults(source.requestIds.get(0), Collections.singletonList("a1"), true);
+        runFrames();
+
+        assertEquals(0, adapter.getItemCount());
+        assertEquals(source.requestIds, source.cancelled);
+    }
+
+    /**
+     * Runs the frame callbacks and main thread messages posted so far, and those they post
+     */
+    private static void runFrames() {
+        final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+
+        while (scheduler.size() > 0) {
+            scheduler.advanceToLastPostedRunnable();
+        }
+    }
+
+    /**
+     * Records the queries and hands the callbacks to the test to deliver results
+     */
+    private static class RecordingSource implements SuggestionSource<String> {
+
+        final List<String> queries = new ArrayList<>();
+        final List<Long> requestIds = new ArrayList<>();
+        final List<Callback<String>> callbacks = new ArrayList<>();
+        final List<Long> cancelled = new ArrayList<>();
+
+        @Override
+        public void query(long requestId, @NonNull String query, @NonNull Callback<String> callback) {
+            queries.add(query);
+            requestIds.add(requestId);
+            callbacks.add(callback);
+        }
+
+        @Override
+        public void cancel(long requestId) {
+            cancelled.add(requestId);
+        }
+
+    }
+
+    private static class TestAdapter extends ReelSearchAdapter<String, RecyclerView.ViewHolder> {
+
+        int replaced;
+
+        @Override
+        protected void onItemsReplaced(@NonNull List<String> items) {
+            replaced++;
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import com.suhel.search.loadtest.DictionaryGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of multi token queries against a {@link PhraseIndex} over
+ * entries of three words each, the shape of product names
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PhraseBenchmark {
+
+    /**
+     * Number of distinct queries cycled through
+     */
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"100000", "1000000", "3000000"})
+    public int size;
+
+    private SearchIndex mEntries;
+    private PhraseIndex mIndex;
+    private String[][] mTwoTokenQueries;
+    private String[][] mThreeTokenQueries;
+    private int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final SearchIndex words = DictionaryLoader.load(new ByteArrayInputStream(
+                new DictionaryGenerator.Builder()
+                        .setSize(size)
+                        .setSeed(42L)
+                        .build()
+                        .generateWordList()));
+        final int count = words.size();
+        final List<String> entries = new ArrayList<>(count);
+
+        // Words paired by strides coprime with most sizes, so tokens recur across entries
+        for (int i = 0; i < count; i++) {
+            entries.add(words.get(i) + ' '
+                    + words.get((int) ((i * 7919L) % count)) + ' '
+                    + words.get((int) ((i * 104729L) % count)));
+        }
+
+        mEntries = SearchIndex.build(entries);
+        mIndex = PhraseIndex.build(mEntries);
+        mTwoTokenQueries = new String[QUERY_COUNT][];
+        mThreeTokenQueries = new String[QUERY_COUNT][];
+
+        // Queries typed halfway into the last token of actual entries
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            final String[] tokens = PhraseIndex.tokenize(mEntries.get((int) ((long) i * count / QUERY_COUNT)));
+            mTwoTokenQueries[i] = new String[]{tokens[0], half(tokens[1])};
+            mThreeTokenQueries[i] = new String[]{tokens[0], tokens[1], half(tokens[2])};
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public PhraseIndex build() {
+        return PhraseIndex.build(mEntries);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void queryTwoTokens(Blackhole bh) {
+        consume(bh, mIndex.query(mTwoTokenQueries[mNext++ & (QUERY_COUNT - 1)]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void queryThreeTokens(Blackhole bh) {
+        consume(bh, mIndex.query(mThreeTokenQueries[mNext++ & (QUERY_COUNT - 1)]));
+    }
+
+    private static String half(String token) {
+        return token.substring(0, Math.max(1, token.length() / 2));
+    }
+
+    /**
+     * Touches the first screen of results the way the reel would
+     */
+    private static void consume(Blackhole bh, List<String> results) {
+        final int visible = Math.min(results.size(), 16);
+
+        for (int i = 0; i < visible; i++) {
+            bh.consume(results.get(i));
+        }
+
+        bh.consume(results.size());
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import com.suhel.search.loadtest.DictionaryGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline benchmarks of the search core: loading a word list and
+ * answering a keystroke worth of query for short and long prefixes.
+ * Prefix queries go to the {@link SearchIndex} directly, as every keystroke
+ * missing the result cache of {@link SearchEngine} does, while cache hits
+ * are measured on their own.
+ * Run through {@code ./gradlew :search:jmh}, which attaches the GC profiler
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchBenchmark {
+
+    /**
+     * Number of distinct prefixes cycled through so that a
+     * single hot path does not skew the numbers
+     */
+    private static final int PREFIX_COUNT = 1024;
+
+    /**
+     * Number of prefixes cycled through by the cache benchmark,
+     * few enough to stay in the result cache
+     */
+    private static final int CACHED_PREFIX_COUNT = SearchEngine.RESULT_CACHE_SIZE / 2;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private byte[] mWordList;
+    private SearchEngine mEngine;
+    private SearchIndex mIndex;
+    private String[] mShortPrefixes;
+    private String[] mLongPrefixes;
+    private int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mWordList = new DictionaryGenerator.Builder()
+                .setSize(size)
+                .setSeed(42L)
+                .build()
+                .generateWordList();
+        mEngine = new SearchEngine();
+        mEngine.load(new ByteArrayInputStream(mWordList));
+
+        mIndex = mEngine.getIndex();
+        mShortPrefixes = new String[PREFIX_COUNT];
+        mLongPrefixes = new String[PREFIX_COUNT];
+
+        // Normalized prefixes of actual words, spread evenly over the index
+        for (int i = 0; i < PREFIX_COUNT; i++) {
+            final String key = mIndex.getKey((int) ((long) i * mIndex.size() / PREFIX_COUNT));
+            mShortPrefixes[i] = key.substring(0, Math.min(key.length(), 2));
+            mLongPrefixes[i] = key.substring(0, Math.min(key.length(), 6));
+        }
+
+        for (int i = 0; i < CACHED_PREFIX_COUNT; i++) {
+            mEngine.query(mLongPrefixes[i]);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public SearchIndex load() throws IOException {
+        return DictionaryLoader.load(new ByteArrayInputStream(mWordList));
+    }
+
+    /**
+     * Builds an index file out of core, the GC profiler showing the heap stay flat across sizes
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public ExternalIndexBuilder.Result buildIndexFile() throws IOException {
+        final File out = File.createTempFile("benchmark", ".idx");
+
+        try {
+            return new ExternalIndexBuilder.Builder()
+                    .build()
+                    .build(new ByteArrayInputStream(mWordList), out);
+        } finally {
+            out.delete();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void queryShortPrefix(Blackhole bh) {
+        consume(bh, mIndex.query(mShortPrefixes[mNext++ & (PREFIX_COUNT - 1)]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void queryLongPrefix(Blackhole bh) {
+        consume(bh, mIndex.query(mLongPrefixes[mNext++ & (PREFIX_COUNT - 1)]));
+    }
+
+    /**
+     * Answers keystrokes from the result cache, normalizing the prefix on the way
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void queryCachedPrefix(Blackhole bh) {
+        consume(bh, mEngine.query(mLongPrefixes[mNext++ & (CACHED_PREFIX_COUNT - 1)]));
+    }
+
+    /**
+     * Touches the first screen of results the way the reel would
+     */
+    private static void consume(Blackhole bh, List<String> results) {
+        final int visible = Math.min(results.size(), 16);
+
+        for (int i = 0; i < visible; i++) {
+            bh.consume(results.get(i));
+        }
+
+        bh.consume(results.size());
+    }
+
+}
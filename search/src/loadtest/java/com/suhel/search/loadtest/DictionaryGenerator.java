@@ -0,0 +1,270 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates large word lists deterministically from a seed.
+ * <p>
+ * Words are made of syllables picked with a Zipfian skew, so that a few
+ * prefixes are shared by many words while most are rare, the way natural
+ * vocabularies are. On top of that a configurable share of the words is
+ * in non Latin scripts or carries diacritics, is unusually long, or
+ * repeats an earlier word, possibly with a different case
+ */
+public final class DictionaryGenerator {
+
+    private static final String[] ONSETS = {
+            "", "b", "c", "d", "f", "g", "h", "j", "k", "l", "m", "n", "p", "r", "s", "t", "v", "w", "y", "z",
+            "bl", "br", "ch", "cl", "cr", "dr", "fl", "fr", "gl", "gr", "ph", "pl", "pr", "sc", "sh", "sk",
+            "sl", "sm", "sn", "sp", "st", "str", "sw", "th", "tr", "wh"
+    };
+
+    private static final String[] NUCLEI = {
+            "a", "e", "i", "o", "u", "ea", "ee", "ai", "ou", "oo", "ie", "y", "au", "oi"
+    };
+
+    private static final String[] CODAS = {
+            "", "", "", "n", "r", "s", "t", "l", "m", "d", "ng", "ck", "st", "nt", "rd", "sh", "ch", "x"
+    };
+
+    /**
+     * Letters swapped in to give Latin words diacritics
+     */
+    private static final String ACCENTED = "\u00e1\u00e0\u00e2\u00e4\u00e3\u00e5\u00e7\u00e9\u00e8\u00ea\u00eb\u00ed\u00ec\u00ee\u00ef\u00f1\u00f3\u00f2\u00f4\u00f6\u00f5\u00fa\u00f9\u00fb\u00fc\u00fd\u00ff\u0153\u00e6\u00f8";
+
+    /**
+     * Alphabets of other scripts: Greek, Cyrillic, Devanagari and CJK
+     */
+    private static final String[] SCRIPTS = {
+            "\u03b1\u03b2\u03b3\u03b4\u03b5\u03b6\u03b7\u03b8\u03b9\u03ba\u03bb\u03bc\u03bd\u03be\u03bf\u03c0\u03c1\u03c3\u03c4\u03c5\u03c6\u03c7\u03c8\u03c9",
+            "\u0430\u0431\u0432\u0433\u0434\u0435\u0436\u0437\u0438\u0439\u043a\u043b\u043c\u043d\u043e\u043f\u0440\u0441\u0442\u0443\u0444\u0445\u0446\u0447\u0448\u0449\u044b\u044d\u044e\u044f",
+            "\u0915\u0916\u0917\u0918\u091a\u091b\u091c\u091d\u091f\u0920\u0921\u0922\u0923\u0924\u0925\u0926\u0927\u0928\u092a\u092b\u092c\u092d\u092e\u092f\u0930\u0932\u0935\u0936\u0938\u0939",
+            "\u7684\u4e00\u662f\u4e0d\u4e86\u4eba\u6211\u5728\u6709\u4ed6\u8fd9\u4e2d\u5927\u6765\u4e0a\u56fd\u4e2a\u5230\u8bf4\u4eec\u4e3a\u5b50\u548c\u4f60\u5730\u51fa\u9053\u4e5f\u65f6\u5e74"
+    };
+
+    private final int mSize;
+    private final long mSeed;
+    private final double mZipfExponent;
+    private final double mUnicodeRatio;
+    private final double mLongTailRatio;
+    private final double mDuplicateRatio;
+
+    private DictionaryGenerator(Builder builder) {
+        mSize = builder.mSize;
+        mSeed = builder.mSeed;
+        mZipfExponent = builder.mZipfExponent;
+        mUnicodeRatio = builder.mUnicodeRatio;
+        mLongTailRatio = builder.mLongTailRatio;
+        mDuplicateRatio = builder.mDuplicateRatio;
+    }
+
+    /**
+     * Generates the words. The same configuration always generates the same words
+     *
+     * @return The words in generation order
+     */
+    public String[] generate() {
+        final Random random = new Random(mSeed);
+        final ZipfSampler onsets = new ZipfSampler(ONSETS.length, mZipfExponent);
+        final ZipfSampler nuclei = new ZipfSampler(NUCLEI.length, mZipfExponent);
+        final ZipfSampler codas = new ZipfSampler(CODAS.length, mZipfExponent);
+        final String[] words = new String[mSize];
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < mSize; i++) {
+            final double roll = random.nextDouble();
+
+            if (i > 0 && roll < mDuplicateRatio) {
+                final String original = words[random.nextInt(i)];
+                words[i] = random.nextBoolean() ? original : capitalize(original);
+                continue;
+            }
+
+            sb.setLength(0);
+
+            if (roll < mDuplicateRatio + mUnicodeRatio && random.nextBoolean()) {
+                appendForeignWord(sb, random);
+            } else {
+                final boolean isLong = random.nextDouble() < mLongTailRatio;
+                final int syllables = isLong ? 6 + random.nextInt(10) : 1 + random.nextInt(4);
+
+                for (int j = 0; j < syllables; j++) {
+                    sb.append(ONSETS[onsets.sample(random)])
+                            .append(NUCLEI[nuclei.sample(random)])
+                            .append(CODAS[codas.sample(random)]);
+                }
+
+                if (roll < mDuplicateRatio + mUnicodeRatio) {
+                    final int at = random.nextInt(sb.length());
+                    sb.setCharAt(at, ACCENTED.charAt(random.nextInt(ACCENTED.length())));
+                }
+            }
+
+            words[i] = sb.toString();
+        }
+
+        return words;
+    }
+
+    /**
+     * Generates the words as a UTF-8 encoded word list, one word per line,
+     * the format of the bundled dictionary
+     *
+     * @return The encoded word list
+     */
+    public byte[] generateWordList() {
+        return encode(generate());
+    }
+
+    /**
+     * Encodes words as a UTF-8 word list, one word per line
+     *
+     * @param words The words
+     * @return The encoded word list
+     */
+    public static byte[] encode(String[] words) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(words.length * 10);
+
+        try {
+            writeTo(words, out);
+        } catch (IOException e) {
+            // Not thrown by an in memory stream
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes words as a UTF-8 encoded word list, one word per line
+     *
+     * @param words The words
+     * @param out   The stream to write to, left open
+     * @throws IOException If writing fails
+     */
+    public static void writeTo(String[] words, OutputStream out) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+
+        for (String word : words) {
+            writer.write(word);
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+
+    private static void appendForeignWord(StringBuilder sb, Random random) {
+        final String script = SCRIPTS[random.nextInt(SCRIPTS.length)];
+        final int length = 2 + random.nextInt(7);
+
+        for (int i = 0; i < length; i++) {
+            sb.append(script.charAt(random.nextInt(script.length())));
+        }
+    }
+
+    private static String capitalize(String word) {
+        return word.isEmpty() ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Builder for {@link DictionaryGenerator}
+     */
+    public static final class Builder {
+
+        private int mSize = 100_000;
+        private long mSeed = 42L;
+        private double mZipfExponent = 1.07;
+        private double mUnicodeRatio = 0.05;
+        private double mLongTailRatio = 0.02;
+        private double mDuplicateRatio = 0.03;
+
+        /**
+         * @param size Number of words, including duplicates
+         */
+        public Builder setSize(int size) {
+            mSize = size;
+            return this;
+        }
+
+        public Builder setSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        /**
+         * @param exponent Skew of the syllable frequencies, higher means fewer distinct prefixes
+         */
+        public Builder setZipfExponent(double exponent) {
+            mZipfExponent = exponent;
+            return this;
+        }
+
+        /**
+         * @param ratio Share of words in other scripts or with diacritics
+         */
+        public Builder setUnicodeRatio(double ratio) {
+            mUnicodeRatio = ratio;
+            return this;
+        }
+
+        /**
+         * @param ratio Share of the remaining words made unusually long
+         */
+        public Builder setLongTailRatio(double ratio) {
+            mLongTailRatio = ratio;
+            return this;
+        }
+
+        /**
+         * @param ratio Share of words repeating an earlier word
+         */
+        public Builder setDuplicateRatio(double ratio) {
+            mDuplicateRatio = ratio;
+            return this;
+        }
+
+        public DictionaryGenerator build() {
+            if (mSize < 0) {
+                throw new IllegalArgumentException("Size must not be negative");
+            }
+
+            if (mDuplicateRatio + mUnicodeRatio > 1.0) {
+                throw new IllegalArgumentException("Duplicate and unicode ratios must not exceed 1 together");
+            }
+
+            return new DictionaryGenerator(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latency percentiles and throughput of a load test run
+ */
+public final class LatencyReport {
+
+    private final long[] mSortedLatencies;
+    private final long mElapsedNanos;
+
+    /**
+     * @param latenciesNanos Latency of each query, sorted in place
+     * @param count          Number of valid entries in the array
+     * @param elapsedNanos   Wall time of the whole run
+     */
+    LatencyReport(long[] latenciesNanos, int count, long elapsedNanos) {
+        mSortedLatencies = Arrays.copyOf(latenciesNanos, count);
+        Arrays.sort(mSortedLatencies);
+        mElapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return Number of queries answered
+     */
+    public int getCount() {
+        return mSortedLatencies.length;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100
+     * @return The nearest rank latency at the percentile in nanoseconds, 0 if nothing ran
+     */
+    public long getPercentileNanos(double percentile) {
+        if (mSortedLatencies.length == 0) {
+            return 0;
+        }
+
+        final int rank = (int) Math.ceil(percentile / 100.0 * mSortedLatencies.length);
+        return mSortedLatencies[Math.min(Math.max(rank - 1, 0), mSortedLatencies.length - 1)];
+    }
+
+    public long getP50Nanos() {
+        return getPercentileNanos(50);
+    }
+
+    public long getP99Nanos() {
+        return getPercentileNanos(99);
+    }
+
+    public long getP999Nanos() {
+        return getPercentileNanos(99.9);
+    }
+
+    public long getMaxNanos() {
+        return mSortedLatencies.length == 0 ? 0 : mSortedLatencies[mSortedLatencies.length - 1];
+    }
+
+    /**
+     * @return Queries answered per second of wall time
+     */
+    public double getThroughput() {
+        return mElapsedNanos == 0 ? 0 : mSortedLatencies.length * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "queries=%d p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus throughput=%.0f/s",
+                getCount(),
+                getP50Nanos() / 1e3,
+                getP99Nanos() / 1e3,
+                getP999Nanos() / 1e3,
+                getMaxNanos() / 1e3,
+                getThroughput());
+    }
+
+}
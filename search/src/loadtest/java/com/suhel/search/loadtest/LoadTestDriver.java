@@ -0,0 +1,262 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.loadtest;
+
+import com.suhel.search.SearchEngine;
+import com.suhel.search.TextNormalizer;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Replays typing sessions against a query function and measures the
+ * latency of every query, the way the app issues one per keystroke.
+ * <p>
+ * Runs headless, either from tests or through {@code ./gradlew :search:loadTest}
+ * against the {@link SearchEngine} backing {@code DictionaryManager.query}
+ */
+public final class LoadTestDriver {
+
+    /**
+     * Next keystrokes precomputed after each query, as {@code DictionaryManager} does
+     */
+    private static final int SPECULATION_BUDGET = 3;
+
+    private final Function<String, ? extends List<?>> mQuery;
+    private final boolean mIsRealtime;
+
+    /**
+     * @param query      The query to load, given the trimmed text after each keystroke
+     * @param isRealtime Whether to wait out the recorded delays between keystrokes,
+     *                   otherwise keystrokes are replayed back to back
+     */
+    public LoadTestDriver(Function<String, ? extends List<?>> query, boolean isRealtime) {
+        mQuery = query;
+        mIsRealtime = isRealtime;
+    }
+
+    /**
+     * Replays the sessions one after the other
+     *
+     * @param sessions The sessions to replay
+     * @return The latencies of all the queries
+     * @throws InterruptedException If interrupted while waiting out a delay
+     */
+    public LatencyReport run(List<TypingSession> sessions) throws InterruptedException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        long sink = 0;
+        final StringBuilder text = new StringBuilder();
+        final long start = System.nanoTime();
+
+        for (TypingSession session : sessions) {
+            text.setLength(0);
+
+            for (int i = 0; i < session.size(); i++) {
+                if (mIsRealtime && session.getDelayMillis(i) > 0) {
+                    Thread.sleep(session.getDelayMillis(i));
+                }
+
+                final char key = session.getKey(i);
+
+                if (key == TypingSession.KEY_BACKSPACE) {
+                    if (text.length() > 0) {
+                        text.setLength(text.length() - 1);
+                    }
+                } else {
+                    text.append(key);
+                }
+
+                final String query = text.toString().trim();
+
+                if (query.isEmpty()) {
+                    continue;
+                }
+
+                final long before = System.nanoTime();
+                sink += mQuery.apply(query).size();
+                final long latency = System.nanoTime() - before;
+
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+
+                latencies[count++] = latency;
+            }
+        }
+
+        final long elapsed = System.nanoTime() - start;
+
+        // Keeps the results alive so the queries are not optimized away
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+
+        return new LatencyReport(latencies, count, elapsed);
+    }
+
+    /**
+     * Synthesizes sessions typing out words picked with a Zipfian skew,
+     * so that popular words are typed more often
+     *
+     * @param words           The dictionary, most popular first
+     * @param count           Number of sessions
+     * @param seed            Seed of the random generator
+     * @param meanDelayMillis Mean time between keystrokes
+     * @param typoProbability Probability of a corrected typo before each character
+     * @return The sessions
+     */
+    public static List<TypingSession> synthesizeSessions(String[] words, int count, long seed,
+                                                         int meanDelayMillis, double typoProbability) {
+        final Random random = new Random(seed);
+        final ZipfSampler popularity = new ZipfSampler(words.length, 1.0);
+        final List<TypingSession> sessions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            sessions.add(TypingSession.synthesize(
+                    words[popularity.sample(random)], random, meanDelayMillis, typoProbability));
+        }
+
+        return sessions;
+    }
+
+    /**
+     * Queries the engine and then speculates on the next keystrokes on the given
+     * executor, replacing any speculation still pending, as {@code DictionaryManager} does
+     *
+     * @param engine   The engine to query
+     * @param executor A single background thread for the speculation
+     * @return The query function
+     */
+    public static Function<String, List<String>> speculativeQuery(SearchEngine engine, ExecutorService executor) {
+        final AtomicReference<Future<?>> speculation = new AtomicReference<>();
+
+        return query -> {
+            final List<String> result = engine.query(query);
+            final long generation = engine.getQueryGeneration();
+            final Future<?> previous = speculation.getAndSet(
+                    executor.submit(() -> engine.speculate(query, SPECULATION_BUDGET, generation)));
+
+            if (previous != null) {
+                previous.cancel(false);
+            }
+
+            return result;
+        };
+    }
+
+    /**
+     * Options: {@code --words <count>}, {@code --sessions <count>}, {@code --seed <seed>},
+     * {@code --replay <recorded sessions file>}, {@code --realtime} and {@code --no-speculation}.
+     * The engine folds case and diacritics and speculates after each query, as the app's does
+     */
+    public static void main(String[] args) throws Exception {
+        int wordCount = 1_000_000;
+        int sessionCount = 5_000;
+        long seed = 42L;
+        String replayFile = null;
+        boolean isRealtime = false;
+        boolean isSpeculative = true;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--words":
+                    wordCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--sessions":
+                    sessionCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--replay":
+                    replayFile = args[++i];
+                    break;
+                case "--realtime":
+                    isRealtime = true;
+                    break;
+                case "--no-speculation":
+                    isSpeculative = false;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        final DictionaryGenerator generator = new DictionaryGenerator.Builder()
+                .setSize(wordCount)
+                .setSeed(seed)
+                .build();
+        final String[] words = generator.generate();
+        final SearchEngine engine = new SearchEngine(TextNormalizer.CASE_AND_DIACRITIC_FOLDING);
+
+        final long loadStart = System.nanoTime();
+        engine.load(new ByteArrayInputStream(DictionaryGenerator.encode(words)));
+        System.out.printf("Loaded %d words in %d ms%n", wordCount, (System.nanoTime() - loadStart) / 1_000_000);
+
+        final List<TypingSession> sessions;
+
+        if (replayFile != null) {
+            try (InputStreamReader reader = new InputStreamReader(new FileInputStream(replayFile), StandardCharsets.UTF_8)) {
+                sessions = TypingSession.parse(reader);
+            }
+        } else {
+            sessions = synthesizeSessions(words, sessionCount, seed, 180, 0.05);
+        }
+
+        final ExecutorService speculation = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "speculation");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        final Function<String, List<String>> query = isSpeculative
+                ? speculativeQuery(engine, speculation)
+                : engine::query;
+        final LoadTestDriver driver = new LoadTestDriver(query, isRealtime);
+
+        // Warm up the JIT with a back to back replay of other sessions, then drop the
+        // caches they filled so that the measured queries start cold
+        new LoadTestDriver(query, false)
+                .run(synthesizeSessions(words, sessionCount, seed + 1, 180, 0.05));
+        engine.trimMemory();
+
+        System.out.println(driver.run(sessions));
+        speculation.shutdownNow();
+    }
+
+}
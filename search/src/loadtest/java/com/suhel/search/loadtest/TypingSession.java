@@ -0,0 +1,218 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A sequence of keystrokes as a user typed them, with the time
+ * elapsed before each one and backspaces included.
+ * <p>
+ * Recorded sessions are plain text, one keystroke per line as
+ * {@code <delay in ms> <key>}, where the key is a single character,
+ * {@code SPACE} or {@code BACKSPACE}. Lines starting with {@code #}
+ * separate sessions and blank lines are ignored
+ */
+public final class TypingSession {
+
+    private static final String SPACE = "SPACE";
+    private static final String BACKSPACE = "BACKSPACE";
+
+    /**
+     * Value of {@link #getKey(int)} for a backspace
+     */
+    public static final char KEY_BACKSPACE = '\b';
+
+    private final int[] mDelaysMillis;
+    private final char[] mKeys;
+
+    private TypingSession(int[] delaysMillis, char[] keys) {
+        mDelaysMillis = delaysMillis;
+        mKeys = keys;
+    }
+
+    /**
+     * @return Number of keystrokes
+     */
+    public int size() {
+        return mKeys.length;
+    }
+
+    /**
+     * @param index Index of the keystroke
+     * @return Milliseconds elapsed since the previous keystroke
+     */
+    public int getDelayMillis(int index) {
+        return mDelaysMillis[index];
+    }
+
+    /**
+     * @param index Index of the keystroke
+     * @return The typed character or {@link #KEY_BACKSPACE}
+     */
+    public char getKey(int index) {
+        return mKeys[index];
+    }
+
+    /**
+     * Parses recorded sessions
+     *
+     * @param reader The recording, closed once read
+     * @return The sessions in recorded order
+     * @throws IOException If reading fails or a line is malformed
+     */
+    public static List<TypingSession> parse(Reader reader) throws IOException {
+        final List<TypingSession> sessions = new ArrayList<>();
+        final Recorder recorder = new Recorder();
+
+        try (BufferedReader br = new BufferedReader(reader)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.startsWith("#")) {
+                    if (recorder.size() > 0) {
+                        sessions.add(recorder.build());
+                    }
+                    continue;
+                }
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                final int split = line.indexOf(' ');
+
+                if (split < 0) {
+                    throw new IOException("Malformed keystroke at line " + lineNumber + ": " + line);
+                }
+
+                final int delay;
+
+                try {
+                    delay = Integer.parseInt(line.substring(0, split));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed delay at line " + lineNumber + ": " + line, e);
+                }
+
+                final String key = line.substring(split + 1);
+
+                if (BACKSPACE.equals(key)) {
+                    recorder.add(delay, KEY_BACKSPACE);
+                } else if (SPACE.equals(key)) {
+                    recorder.add(delay, ' ');
+                } else if (key.length() == 1) {
+                    recorder.add(delay, key.charAt(0));
+                } else {
+                    throw new IOException("Malformed key at line " + lineNumber + ": " + line);
+                }
+            }
+        }
+
+        if (recorder.size() > 0) {
+            sessions.add(recorder.build());
+        }
+
+        return Collections.unmodifiableList(sessions);
+    }
+
+    /**
+     * Synthesizes a session typing out the target word with human like timing.
+     * Now and then a wrong key is hit and corrected with a backspace
+     *
+     * @param target           The word the user means to type
+     * @param random           The source of randomness
+     * @param meanDelayMillis  Mean time between keystrokes
+     * @param typoProbability  Probability of a wrong key before each character
+     * @return The session
+     */
+    public static TypingSession synthesize(String target, Random random, int meanDelayMillis, double typoProbability) {
+        final Recorder recorder = new Recorder();
+
+        for (int i = 0; i < target.length(); i++) {
+            if (random.nextDouble() < typoProbability) {
+                recorder.add(delay(random, meanDelayMillis), (char) ('a' + random.nextInt(26)));
+                // Noticing the typo takes a bit longer
+                recorder.add(delay(random, meanDelayMillis * 2), KEY_BACKSPACE);
+            }
+
+            recorder.add(delay(random, meanDelayMillis), target.charAt(i));
+        }
+
+        return recorder.build();
+    }
+
+    /**
+     * @return Exponentially distributed delay around the mean, as gaps between keystrokes are
+     */
+    private static int delay(Random random, int meanDelayMillis) {
+        return (int) Math.min(-Math.log(1.0 - random.nextDouble()) * meanDelayMillis, meanDelayMillis * 10L);
+    }
+
+    /**
+     * Collects keystrokes of one session
+     */
+    private static final class Recorder {
+
+        private int[] mDelays = new int[16];
+        private char[] mKeys = new char[16];
+        private int mSize;
+
+        void add(int delayMillis, char key) {
+            if (mSize == mKeys.length) {
+                mDelays = Arrays.copyOf(mDelays, mSize * 2);
+                mKeys = Arrays.copyOf(mKeys, mSize * 2);
+            }
+
+            mDelays[mSize] = delayMillis;
+            mKeys[mSize] = key;
+            mSize++;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        TypingSession build() {
+            final TypingSession session = new TypingSession(
+                    Arrays.copyOf(mDelays, mSize),
+                    Arrays.copyOf(mKeys, mSize));
+            mSize = 0;
+            return session;
+        }
+
+    }
+
+}
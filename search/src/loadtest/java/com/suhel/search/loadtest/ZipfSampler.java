@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks from a Zipfian distribution, where rank {@code k} is
+ * drawn with a probability proportional to {@code 1 / (k + 1)^exponent}
+ */
+public final class ZipfSampler {
+
+    /**
+     * Stores the cumulative probability of each rank
+     */
+    private final double[] mCdf;
+
+    /**
+     * @param size     Number of ranks
+     * @param exponent Skew of the distribution, around 1 for natural language
+     */
+    public ZipfSampler(int size, double exponent) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be at least 1");
+        }
+
+        mCdf = new double[size];
+        double sum = 0;
+
+        for (int i = 0; i < size; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            mCdf[i] = sum;
+        }
+
+        for (int i = 0; i < size; i++) {
+            mCdf[i] /= sum;
+        }
+    }
+
+    /**
+     * @return Number of ranks
+     */
+    public int size() {
+        return mCdf.length;
+    }
+
+    /**
+     * @param random The source of randomness
+     * @return A rank from 0, most likely, to {@link #size()} - 1
+     */
+    public int sample(Random random) {
+        final int index = Arrays.binarySearch(mCdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, mCdf.length - 1);
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a word list, one word per line, and builds a {@link SearchIndex} out of it
+ */
+public final class DictionaryLoader {
+
+    private DictionaryLoader() {
+
+    }
+
+    /**
+     * Reads, case folds and indexes the words of the stream. The stream is closed
+     *
+     * @param in The UTF-8 encoded word list
+     * @return The index of the words
+     * @throws IOException If the stream cannot be read
+     */
+    public static SearchIndex load(InputStream in) throws IOException {
+        return load(in, TextNormalizer.CASE_FOLDING);
+    }
+
+    /**
+     * Reads, normalizes and indexes the words of the stream. The stream is closed.
+     * When the normalizer drops accents the words are looked up without them but
+     * returned with them, only case folded
+     *
+     * @param in         The UTF-8 encoded word list
+     * @param normalizer Folds the words into the form they are compared in
+     * @return The index of the words
+     * @throws IOException If the stream cannot be read
+     */
+    public static SearchIndex load(InputStream in, TextNormalizer normalizer) throws IOException {
+        final boolean foldDiacritics = normalizer.isFoldingDiacritics();
+        final List<String> keys = new ArrayList<>();
+        final List<String> values = foldDiacritics ? new ArrayList<>() : keys;
+        final StringBuilder buffer = new StringBuilder();
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String word;
+
+            while ((word = br.readLine()) != null) {
+                final String key = normalizer.normalize(word, buffer).toString();
+                keys.add(key);
+
+                if (foldDiacritics) {
+                    final String value = TextNormalizer.CASE_FOLDING.normalize(word, buffer).toString();
+                    // Most words carry no accents, share the string then
+                    values.add(value.equals(key) ? key : value);
+                }
+            }
+        }
+
+        return foldDiacritics ? SearchIndex.build(keys, values) : SearchIndex.build(keys);
+    }
+
+    /**
+     * Reads an index file prepared by {@link ExternalIndexBuilder}, whose words
+     * are already normalized, sorted and deduplicated. The stream is closed
+     *
+     * @param in         The index file
+     * @param normalizer The normalizer the engine folds queries with, which has
+     *                   to be the one the file was built with
+     * @return The index of the words
+     * @throws IOException If the stream cannot be read, is not an index file,
+     *                     was built with another normalizer or is out of order
+     */
+    public static SearchIndex loadIndex(InputStream in, TextNormalizer normalizer) throws IOException {
+        final List<String> keys = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        boolean hasValues = false;
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            final String header = br.readLine();
+
+            if (header == null || !header.startsWith(ExternalIndexBuilder.HEADER)) {
+                throw new IOException("Not an index file");
+            }
+
+            if (!header.equals(ExternalIndexBuilder.header(normalizer))) {
+                throw new IOException("Index built for another normalization: " + header);
+            }
+
+            String line;
+
+            while ((line = br.readLine()) != null) {
+                final int separator = line.indexOf(ExternalIndexBuilder.VALUE_SEPARATOR);
+
+                if (separator < 0) {
+                    keys.add(line);
+                    values.add(line);
+                } else {
+                    keys.add(line.substring(0, separator));
+                    values.add(line.substring(separator + 1));
+                    hasValues = true;
+                }
+            }
+        }
+
+        final String[] sortedKeys = keys.toArray(new String[0]);
+
+        try {
+            return SearchIndex.ofSorted(sortedKeys, hasValues ? values.toArray(new String[0]) : sortedKeys);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt index file", e);
+        }
+    }
+
+    /**
+     * Normalizes a word or a query so that both compare alike
+     *
+     * @param word The raw word
+     * @return The case folded word
+     */
+    public static String normalize(String word) {
+        return TextNormalizer.CASE_FOLDING.normalize(word);
+    }
+
+}
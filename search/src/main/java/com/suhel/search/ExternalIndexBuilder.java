@@ -0,0 +1,496 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Prepares an index file out of a word list of any size with a fixed amount of heap.
+ * <p>
+ * The words are read in chunks bounded by their estimated heap, normalized, sorted
+ * and deduplicated, and each chunk is spilled as a sorted run into a temporary
+ * directory. The runs are then merged a bounded number at a time, dropping the
+ * duplicates across runs, until a single run is left, which becomes the index
+ * file read by {@link DictionaryLoader#loadIndex(InputStream, TextNormalizer)}.
+ * <p>
+ * The index file is UTF-8 text starting with a header naming the normalization,
+ * followed by one word per line in sorted order, as its key and, when different,
+ * a tab and its value
+ */
+public final class ExternalIndexBuilder {
+
+    /**
+     * Default estimated heap of the words sorted in memory at once
+     */
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+    /**
+     * Default number of runs merged at once, each holding one read buffer
+     */
+    public static final int DEFAULT_MERGE_FAN_IN = 32;
+
+    /**
+     * First line of every index file, followed by the normalization
+     */
+    static final String HEADER = "#reelsearch-index v1 ";
+
+    static final char VALUE_SEPARATOR = '\t';
+
+    private static final String RUN_PREFIX = "run-";
+    private static final String RUN_SUFFIX = ".tmp";
+
+    /**
+     * Estimated heap of an {@link Entry} along with its slots in the chunk and in
+     * the array it is sorted in, on a 64-bit VM without compressed pointers
+     */
+    private static final int ENTRY_BYTES = 32;
+
+    /**
+     * Estimated heap of a {@link String} and its backing array, besides
+     * 2 bytes per char. Short words cost several times their chars
+     */
+    private static final int STRING_BYTES = 40;
+
+    private final TextNormalizer mNormalizer;
+    private final File mTempDir;
+    private final int mChunkBytes;
+    private final int mMergeFanIn;
+
+    private ExternalIndexBuilder(Builder builder) {
+        mNormalizer = builder.mNormalizer;
+        mTempDir = builder.mTempDir;
+        mChunkBytes = builder.mChunkBytes;
+        mMergeFanIn = builder.mMergeFanIn;
+    }
+
+    /**
+     * Builds the index file. Blocking, the input stream is closed
+     *
+     * @param in  The UTF-8 encoded word list, one word per line, in any order
+     * @param out The index file, replaced once complete
+     * @return What the build did
+     * @throws IOException If reading, spilling or writing fails
+     */
+    public Result build(InputStream in, File out) throws IOException {
+        final Result result = new Result();
+        final File index = new File(out.getPath() + RUN_SUFFIX);
+        List<File> runs = new ArrayList<>();
+        boolean isMoved = false;
+
+        try {
+            spill(in, runs, result);
+
+            while (runs.size() > 1) {
+                runs = mergePass(runs, result);
+                result.mMergePasses++;
+            }
+
+            try (Writer writer = writer(index);
+                 Run run = runs.isEmpty() ? null : new Run(runs.get(0))) {
+                writer.write(header(mNormalizer));
+                writer.write('\n');
+
+                while (run != null && run.advance()) {
+                    writeEntry(writer, run.mKey, run.mValue);
+                    result.mEntriesWritten++;
+                }
+            }
+
+            if (!index.renameTo(out)) {
+                out.delete();
+                if (!index.renameTo(out)) {
+                    throw new IOException("Cannot move " + index + " to " + out);
+                }
+            }
+            isMoved = true;
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+
+            if (!isMoved) {
+                index.delete();
+            }
+        }
+
+        result.mDuplicatesDropped = result.mLinesRead - result.mEntriesWritten;
+        return result;
+    }
+
+    /**
+     * @return The header of index files built with the normalizer
+     */
+    static String header(TextNormalizer normalizer) {
+        return HEADER + (normalizer.isFoldingDiacritics() ? "case+diacritics" : "case");
+    }
+
+    /**
+     * Reads the word list a chunk at a time and spills every chunk as a sorted run
+     */
+    private void spill(InputStream in, List<File> runs, Result result) throws IOException {
+        final List<Entry> chunk = new ArrayList<>();
+        final StringBuilder buffer = new StringBuilder();
+        final boolean foldDiacritics = mNormalizer.isFoldingDiacritics();
+        long chunkBytes = 0;
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String word;
+
+            while ((word = br.readLine()) != null) {
+                final String key = mNormalizer.normalize(word, buffer).toString();
+                String value = key;
+
+                if (foldDiacritics) {
+                    value = TextNormalizer.CASE_FOLDING.normalize(word, buffer).toString();
+                    value = value.equals(key) ? key : value;
+                }
+
+                chunk.add(new Entry(key, value));
+                chunkBytes += ENTRY_BYTES + STRING_BYTES + 2L * key.length()
+                        + (value != key ? STRING_BYTES + 2L * value.length() : 0);
+                result.mLinesRead++;
+
+                if (chunkBytes >= mChunkBytes) {
+                    runs.add(writeRun(chunk, result));
+                    chunk.clear();
+                    chunkBytes = 0;
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            runs.add(writeRun(chunk, result));
+        }
+    }
+
+    /**
+     * Sorts, deduplicates and writes a chunk as a run
+     */
+    private File writeRun(List<Entry> chunk, Result result) throws IOException {
+        final Entry[] entries = chunk.toArray(new Entry[0]);
+        Arrays.sort(entries);
+        result.mLargestChunk = Math.max(result.mLargestChunk, entries.length);
+
+        final File file = File.createTempFile(RUN_PREFIX, RUN_SUFFIX, mTempDir);
+        Entry previous = null;
+
+        try (Writer writer = writer(file)) {
+            for (Entry entry : entries) {
+                if (previous == null || entry.compareTo(previous) != 0) {
+                    writeEntry(writer, entry.mKey, entry.mValue);
+                    previous = entry;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+
+        result.mRunCount++;
+        return file;
+    }
+
+    /**
+     * Merges the runs {@link #mMergeFanIn} at a time into fewer runs. On failure the
+     * runs created by the pass are deleted, the ones passed in are left to the caller
+     */
+    private List<File> mergePass(List<File> runs, Result result) throws IOException {
+        final List<File> merged = new ArrayList<>();
+        final List<File> created = new ArrayList<>();
+
+        try {
+            for (int from = 0; from < runs.size(); from += mMergeFanIn) {
+                final List<File> group = runs.subList(from, Math.min(runs.size(), from + mMergeFanIn));
+
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+
+                final File file = File.createTempFile(RUN_PREFIX, RUN_SUFFIX, mTempDir);
+                created.add(file);
+                merged.add(file);
+                merge(group, file);
+
+                for (File run : group) {
+                    run.delete();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (File run : created) {
+                run.delete();
+            }
+            throw e;
+        }
+
+        return merged;
+    }
+
+    /**
+     * Merges sorted runs into one, keeping one copy of each word
+     */
+    private static void merge(List<File> runs, File out) throws IOException {
+        final PriorityQueue<Run> queue = new PriorityQueue<>(runs.size());
+
+        try (Writer writer = writer(out)) {
+            try {
+                for (File file : runs) {
+                    final Run run = new Run(file);
+                    if (run.advance()) {
+                        queue.add(run);
+                    } else {
+                        run.close();
+                    }
+                }
+
+                String lastKey = null;
+                String lastValue = null;
+
+                while (!queue.isEmpty()) {
+                    final Run run = queue.poll();
+
+                    if (!run.mKey.equals(lastKey) || !run.mValue.equals(lastValue)) {
+                        writeEntry(writer, run.mKey, run.mValue);
+                        lastKey = run.mKey;
+                        lastValue = run.mValue;
+                    }
+
+                    if (run.advance()) {
+                        queue.add(run);
+                    } else {
+                        run.close();
+                    }
+                }
+            } finally {
+                for (Run run : queue) {
+                    run.close();
+                }
+            }
+        }
+    }
+
+    private static Writer writer(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static void writeEntry(Writer writer, String key, String value) throws IOException {
+        writer.write(key);
+
+        if (!value.equals(key)) {
+            writer.write(VALUE_SEPARATOR);
+            writer.write(value);
+        }
+
+        writer.write('\n');
+    }
+
+    /**
+     * What a build did, for logs and tests
+     */
+    public static final class Result {
+
+        private long mLinesRead;
+        private long mEntriesWritten;
+        private long mDuplicatesDropped;
+        private int mRunCount;
+        private int mMergePasses;
+        private int mLargestChunk;
+
+        public long getLinesRead() {
+            return mLinesRead;
+        }
+
+        public long getEntriesWritten() {
+            return mEntriesWritten;
+        }
+
+        public long getDuplicatesDropped() {
+            return mDuplicatesDropped;
+        }
+
+        /**
+         * @return Number of sorted runs spilled before merging
+         */
+        public int getRunCount() {
+            return mRunCount;
+        }
+
+        /**
+         * @return Number of passes needed to merge the runs down to one
+         */
+        public int getMergePasses() {
+            return mMergePasses;
+        }
+
+        /**
+         * @return Most words held in memory at once
+         */
+        public int getLargestChunk() {
+            return mLargestChunk;
+        }
+
+        @Override
+        public String toString() {
+            return "Read " + mLinesRead + " words, wrote " + mEntriesWritten + ", dropped "
+                    + mDuplicatesDropped + " duplicates, " + mRunCount + " runs merged in "
+                    + mMergePasses + " passes, at most " + mLargestChunk + " words in memory";
+        }
+
+    }
+
+    /**
+     * A normalized word ordered by key, then by value
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        final String mKey;
+        final String mValue;
+
+        Entry(String key, String value) {
+            mKey = key;
+            mValue = value;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            final int byKey = mKey.compareTo(o.mKey);
+            return byKey != 0 ? byKey : mValue.compareTo(o.mValue);
+        }
+
+    }
+
+    /**
+     * Reads a sorted run one word at a time
+     */
+    private static final class Run implements Comparable<Run>, AutoCloseable {
+
+        private final BufferedReader mReader;
+        String mKey;
+        String mValue;
+
+        Run(File file) throws IOException {
+            mReader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return Whether a word was read, false at the end of the run
+         */
+        boolean advance() throws IOException {
+            final String line = mReader.readLine();
+
+            if (line == null) {
+                return false;
+            }
+
+            final int separator = line.indexOf(VALUE_SEPARATOR);
+            mKey = separator < 0 ? line : line.substring(0, separator);
+            mValue = separator < 0 ? mKey : line.substring(separator + 1);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Run o) {
+            final int byKey = mKey.compareTo(o.mKey);
+            return byKey != 0 ? byKey : mValue.compareTo(o.mValue);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mReader.close();
+        }
+
+    }
+
+    /**
+     * Builder for {@link ExternalIndexBuilder}
+     */
+    public static final class Builder {
+
+        private TextNormalizer mNormalizer = TextNormalizer.CASE_FOLDING;
+        private File mTempDir;
+        private int mChunkBytes = DEFAULT_CHUNK_BYTES;
+        private int mMergeFanIn = DEFAULT_MERGE_FAN_IN;
+
+        /**
+         * @param normalizer Folds the words, {@link TextNormalizer#CASE_FOLDING} by default
+         */
+        public Builder setNormalizer(TextNormalizer normalizer) {
+            mNormalizer = normalizer;
+            return this;
+        }
+
+        /**
+         * @param tempDir Directory the runs are spilled into, such as the cache dir of the app.
+         *                The default temporary directory by default
+         */
+        public Builder setTempDir(File tempDir) {
+            mTempDir = tempDir;
+            return this;
+        }
+
+        /**
+         * @param chunkBytes Estimated heap of the words sorted in memory at once,
+         *                   counting every object behind them. {@link #DEFAULT_CHUNK_BYTES} by default
+         */
+        public Builder setChunkBytes(int chunkBytes) {
+            if (chunkBytes < 1) {
+                throw new IllegalArgumentException("Chunk must hold at least 1 byte");
+            }
+            mChunkBytes = chunkBytes;
+            return this;
+        }
+
+        /**
+         * @param fanIn Number of runs merged at once
+         */
+        public Builder setMergeFanIn(int fanIn) {
+            if (fanIn < 2) {
+                throw new IllegalArgumentException("Must merge at least 2 runs at once");
+            }
+            mMergeFanIn = fanIn;
+            return this;
+        }
+
+        public ExternalIndexBuilder build() {
+            return new ExternalIndexBuilder(this);
+        }
+
+    }
+
+}
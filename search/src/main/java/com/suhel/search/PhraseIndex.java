@@ -0,0 +1,366 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable inverted index over the tokens of multi word entries such as
+ * product names, answering queries made of several token prefixes.
+ * <p>
+ * The distinct tokens are kept sorted, so that the tokens starting with a
+ * prefix form one contiguous range of token ids. Each token maps to the
+ * ascending ids of the entries holding it, all posting lists laid end to end
+ * in one array. A query starts from the term with the fewest postings and
+ * narrows it down term by term, galloping through the posting lists of whole
+ * tokens and checking the token ids of the remaining candidates otherwise
+ */
+public final class PhraseIndex {
+
+    private static final long INT_BYTES = 4;
+
+    /**
+     * Stores the entries, an entry id being its position in sorted order
+     */
+    private final SearchIndex mEntries;
+
+    /**
+     * Stores the distinct tokens, a token id being its position in sorted order
+     */
+    private final SearchIndex mTokens;
+
+    /**
+     * Stores where the posting list of each token starts in {@link #mPostings},
+     * with one more slot marking the end of the last list
+     */
+    private final int[] mPostingOffsets;
+
+    /**
+     * Stores the posting lists of all the tokens, one after another
+     */
+    private final int[] mPostings;
+
+    /**
+     * Stores where the token ids of each entry start in {@link #mEntryTokens}
+     */
+    private final int[] mEntryTokenOffsets;
+
+    /**
+     * Stores the ascending distinct token ids of all the entries, one after another
+     */
+    private final int[] mEntryTokens;
+
+    private PhraseIndex(SearchIndex entries, SearchIndex tokens,
+                        int[] postingOffsets, int[] postings,
+                        int[] entryTokenOffsets, int[] entryTokens) {
+        mEntries = entries;
+        mTokens = tokens;
+        mPostingOffsets = postingOffsets;
+        mPostings = postings;
+        mEntryTokenOffsets = entryTokenOffsets;
+        mEntryTokens = entryTokens;
+    }
+
+    /**
+     * Builds the inverted index over the entries of an index
+     *
+     * @param entries The normalized entries, tokens separated by whitespace
+     * @return The index
+     */
+    public static PhraseIndex build(SearchIndex entries) {
+        final int entryCount = entries.size();
+        final int[] entryTokenOffsets = new int[entryCount + 1];
+        final List<String> tokens = new ArrayList<>();
+
+        for (int i = 0; i < entryCount; i++) {
+            Collections.addAll(tokens, tokenize(entries.getKey(i)));
+            entryTokenOffsets[i + 1] = tokens.size();
+        }
+
+        final String[] distinct = tokens.toArray(new String[0]);
+        Arrays.sort(distinct);
+        int tokenCount = 0;
+
+        for (String token : distinct) {
+            if (tokenCount == 0 || !distinct[tokenCount - 1].equals(token)) {
+                distinct[tokenCount++] = token;
+            }
+        }
+
+        final SearchIndex tokenIndex = SearchIndex.build(Arrays.asList(distinct).subList(0, tokenCount));
+
+        // Token ids of each entry, sorted and with repeats dropped in place
+        final int[] entryTokens = new int[tokens.size()];
+        final int[] postingOffsets = new int[tokenCount + 1];
+        int written = 0;
+
+        for (int i = 0; i < entryCount; i++) {
+            final int from = entryTokenOffsets[i];
+            final int to = entryTokenOffsets[i + 1];
+
+            for (int j = from; j < to; j++) {
+                entryTokens[j] = tokenIndex.lowerBound(tokens.get(j));
+            }
+
+            Arrays.sort(entryTokens, from, to);
+            entryTokenOffsets[i] = written;
+
+            for (int j = from; j < to; j++) {
+                if (j == from || entryTokens[j] != entryTokens[j - 1]) {
+                    postingOffsets[entryTokens[j] + 1]++;
+                    entryTokens[written++] = entryTokens[j];
+                }
+            }
+        }
+
+        entryTokenOffsets[entryCount] = written;
+
+        for (int i = 0; i < tokenCount; i++) {
+            postingOffsets[i + 1] += postingOffsets[i];
+        }
+
+        // Entries are visited in id order so every posting list comes out sorted
+        final int[] postings = new int[written];
+        final int[] cursor = Arrays.copyOf(postingOffsets, tokenCount);
+
+        for (int i = 0; i < entryCount; i++) {
+            for (int j = entryTokenOffsets[i]; j < entryTokenOffsets[i + 1]; j++) {
+                postings[cursor[entryTokens[j]]++] = i;
+            }
+        }
+
+        return new PhraseIndex(entries, tokenIndex, postingOffsets, postings,
+                entryTokenOffsets, Arrays.copyOf(entryTokens, written));
+    }
+
+    /**
+     * Splits a normalized entry or query into its tokens
+     *
+     * @param text The text
+     * @return The tokens, empty if there are none
+     */
+    public static String[] tokenize(CharSequence text) {
+        final List<String> tokens = new ArrayList<>(4);
+        final int length = text.length();
+        int start = -1;
+
+        for (int i = 0; i <= length; i++) {
+            if (i == length || Character.isWhitespace(text.charAt(i))) {
+                if (start >= 0) {
+                    tokens.add(text.subSequence(start, i).toString());
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Answers a query like {@link #query(String...)} by checking every entry, for
+     * when the index has not been built yet. Linear in the length of the entries
+     *
+     * @param entries  The normalized entries, tokens separated by whitespace
+     * @param prefixes The normalized token prefixes
+     * @return The matching entries in sorted order, empty if none or if there are no prefixes
+     */
+    public static List<String> scan(SearchIndex entries, String... prefixes) {
+        if (prefixes.length == 0) {
+            return Collections.emptyList();
+        }
+
+        final List<String> matches = new ArrayList<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            final String key = entries.getKey(i);
+            boolean isMatch = true;
+
+            for (int j = 0; j < prefixes.length && isMatch; j++) {
+                isMatch = holdsTokenStartingWith(key, prefixes[j]);
+            }
+
+            if (isMatch) {
+                matches.add(entries.get(i));
+            }
+        }
+
+        return matches;
+    }
+
+    private static boolean holdsTokenStartingWith(String text, String prefix) {
+        final int last = text.length() - prefix.length();
+
+        for (int i = 0; i <= last; i++) {
+            if ((i == 0 || Character.isWhitespace(text.charAt(i - 1))) && text.startsWith(prefix, i)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The number of distinct tokens
+     */
+    public int getTokenCount() {
+        return mTokens.size();
+    }
+
+    /**
+     * @return Approximate number of bytes the index takes on the heap, besides the entries
+     */
+    public long estimateFootprintBytes() {
+        return mTokens.estimateFootprintBytes()
+                + INT_BYTES * (mPostingOffsets.length + mPostings.length
+                + mEntryTokenOffsets.length + mEntryTokens.length);
+    }
+
+    /**
+     * Returns the entries holding a token starting with each of the prefixes, in
+     * sorted order. The same token may satisfy more than one prefix
+     *
+     * @param prefixes The normalized token prefixes
+     * @return The matching entries, empty if none or if there are no prefixes
+     */
+    public List<String> query(String... prefixes) {
+        final int terms = prefixes.length;
+
+        if (terms == 0) {
+            return Collections.emptyList();
+        }
+
+        final int[] from = new int[terms];
+        final int[] to = new int[terms];
+        final int[] order = new int[terms];
+
+        for (int i = 0; i < terms; i++) {
+            from[i] = mTokens.lowerBound(prefixes[i]);
+            to[i] = mTokens.prefixEnd(prefixes[i], from[i]);
+
+            if (from[i] == to[i]) {
+                return Collections.emptyList();
+            }
+
+            // Insertion by number of postings, queries hold a handful of terms
+            int at = i;
+            while (at > 0 && postingCount(from, to, order[at - 1]) > postingCount(from, to, i)) {
+                order[at] = order[at - 1];
+                at--;
+            }
+            order[at] = i;
+        }
+
+        final int driver = order[0];
+        final int[] ids = Arrays.copyOfRange(mPostings,
+                mPostingOffsets[from[driver]], mPostingOffsets[to[driver]]);
+        int length = ids.length;
+
+        // An entry can hold several tokens starting with the prefix
+        if (to[driver] - from[driver] > 1) {
+            length = PostingLists.sortDistinct(ids, length);
+        }
+
+        for (int i = 1; i < terms && length > 0; i++) {
+            final int term = order[i];
+
+            if (to[term] - from[term] == 1) {
+                length = PostingLists.intersect(ids, length, mPostings,
+                        mPostingOffsets[from[term]], mPostingOffsets[to[term]]);
+            } else {
+                length = retainHoldingToken(ids, length, from[term], to[term]);
+            }
+        }
+
+        return length > 0 ? new EntryList(ids, length) : Collections.<String>emptyList();
+    }
+
+    private int postingCount(int[] from, int[] to, int term) {
+        return mPostingOffsets[to[term]] - mPostingOffsets[from[term]];
+    }
+
+    /**
+     * Keeps the entries holding a token id in the range. Cheaper than merging
+     * the posting lists of every token in the range once the candidates are few
+     */
+    private int retainHoldingToken(int[] ids, int length, int tokenFrom, int tokenTo) {
+        int n = 0;
+
+        for (int i = 0; i < length; i++) {
+            final int id = ids[i];
+
+            for (int j = mEntryTokenOffsets[id]; j < mEntryTokenOffsets[id + 1]; j++) {
+                final int token = mEntryTokens[j];
+
+                if (token >= tokenFrom && token < tokenTo) {
+                    ids[n++] = id;
+                    break;
+                }
+
+                // Token ids of an entry are ascending
+                if (token >= tokenTo) {
+                    break;
+                }
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Read only view of the entries behind a list of entry ids
+     */
+    private class EntryList extends AbstractList<String> implements RandomAccess {
+
+        private final int[] mIds;
+        private final int mSize;
+
+        EntryList(int[] ids, int size) {
+            mIds = ids;
+            mSize = size;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+            }
+            return mEntries.get(mIds[index]);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.util.Arrays;
+
+/**
+ * Operations on posting lists, ascending arrays of distinct entry ids.
+ * Results are written in place so that a query allocates only its driver list
+ */
+final class PostingLists {
+
+    /**
+     * Above this ratio of lengths the shorter list gallops through the longer
+     * one instead of walking both in step
+     */
+    static final int GALLOP_RATIO = 8;
+
+    private PostingLists() {
+
+    }
+
+    /**
+     * Keeps the ids of {@code a} which also appear in {@code b[from, to)}
+     *
+     * @param a       The candidates, overwritten with the intersection
+     * @param aLength Number of candidates in {@code a}
+     * @param b       Array holding the other list
+     * @param from    First index of the other list in {@code b}
+     * @param to      Index past the last of the other list in {@code b}
+     * @return Number of ids left in {@code a}
+     */
+    static int intersect(int[] a, int aLength, int[] b, int from, int to) {
+        if ((long) aLength * GALLOP_RATIO < to - from) {
+            return gallop(a, aLength, b, from, to);
+        }
+
+        int n = 0;
+        int i = 0;
+        int j = from;
+
+        while (i < aLength && j < to) {
+            final int x = a[i];
+            final int y = b[j];
+
+            // Both sides advance without data dependent branches on equality
+            if (x == y) {
+                a[n++] = x;
+            }
+            i += x <= y ? 1 : 0;
+            j += y <= x ? 1 : 0;
+        }
+
+        return n;
+    }
+
+    /**
+     * Intersects by searching each candidate in the longer list, doubling the
+     * step until it is overshot and then binary searching the last step
+     */
+    static int gallop(int[] a, int aLength, int[] b, int from, int to) {
+        int n = 0;
+        int low = from;
+
+        for (int i = 0; i < aLength && low < to; i++) {
+            final int x = a[i];
+            int step = 1;
+            int high = low;
+
+            while (high < to && b[high] < x) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+
+            high = Math.min(high, to - 1);
+
+            // First index in [low, high] not less than x
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (b[mid] < x) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            if (low < to && b[low] == x) {
+                a[n++] = x;
+                low++;
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Sorts the ids and drops the repeats
+     *
+     * @return Number of distinct ids left at the front of the array
+     */
+    static int sortDistinct(int[] ids, int length) {
+        Arrays.sort(ids, 0, length);
+        int n = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || ids[n - 1] != ids[i]) {
+                ids[n++] = ids[i];
+            }
+        }
+
+        return n;
+    }
+
+}
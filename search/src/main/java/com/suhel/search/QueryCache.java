@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least recently used cache of query results, keyed by the normalized query.
+ * Thread safe, lookups and insertions lock the cache briefly. Lookups compare the
+ * query in place, so a hit allocates nothing even if the query is a reused buffer
+ *
+ * @param <V> Type of the results
+ */
+public final class QueryCache<V> implements ResidentTier {
+
+    /**
+     * Rough cost of a map entry, its key object and the result reference
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final String mName;
+    private final int mMaxEntries;
+    private final Map<Key, V> mEntries;
+
+    /**
+     * Reused to look queries up, only touched under the lock
+     */
+    private final Key mProbe = new Key();
+    private long mKeyChars;
+
+    /**
+     * @param name       Name of the tier in reports
+     * @param maxEntries Number of results kept before the least recently used is evicted
+     */
+    public QueryCache(String name, int maxEntries) {
+        mName = name;
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<Key, V>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+                if (size() > mMaxEntries) {
+                    mKeyChars -= eldest.getKey().mChars.length();
+                    return true;
+                }
+                return false;
+            }
+
+        };
+    }
+
+    /**
+     * @param query The normalized query
+     * @return The cached results, null if not cached
+     */
+    public synchronized V get(CharSequence query) {
+        final V results = mEntries.get(mProbe.set(query));
+        mProbe.set(null);
+        return results;
+    }
+
+    /**
+     * Copies the query into the key it is kept under
+     *
+     * @param query   The normalized query
+     * @param results The results to cache
+     */
+    public synchronized void put(CharSequence query, V results) {
+        if (mEntries.put(new Key().set(query.toString()), results) == null) {
+            mKeyChars += query.length();
+        }
+    }
+
+    /**
+     * @return Number of cached results
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Counts the keys and entries only, results are usually views over the index
+     */
+    @Override
+    public synchronized long estimateFootprintBytes() {
+        return mEntries.size() * (long) ENTRY_OVERHEAD_BYTES + mKeyChars * 2;
+    }
+
+    @Override
+    public synchronized void release() {
+        mEntries.clear();
+        mKeyChars = 0;
+    }
+
+    /**
+     * A key comparing and hashing by content, whatever the type of the characters
+     */
+    private static final class Key {
+
+        private CharSequence mChars;
+        private int mHash;
+
+        Key set(CharSequence chars) {
+            mChars = chars;
+            mHash = 0;
+
+            if (chars != null) {
+                final int length = chars.length();
+
+                // Same as String.hashCode()
+                for (int i = 0; i < length; i++) {
+                    mHash = 31 * mHash + chars.charAt(i);
+                }
+            }
+
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) o;
+            final int length = mChars.length();
+
+            if (mHash != other.mHash || length != other.mChars.length()) {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (mChars.charAt(i) != other.mChars.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,463 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the current {@link SearchIndex} and answers prefix queries against it.
+ * Thread safe, queries run against whichever index was loaded last.
+ * <p>
+ * Memory is held in tiers: the core index stays resident for as long as the
+ * engine lives, while secondary tiers such as the result cache are dropped by
+ * {@link #trimMemory()} and refill on demand as queries come in.
+ * <p>
+ * Queries of a single token match the entries starting with it, while queries
+ * of several tokens match the entries holding a token starting with each of
+ * them, answered by a {@link PhraseIndex} built over the entries. Given an executor
+ * through {@link #setPhraseIndexExecutor(Executor)}, the phrase index is built there
+ * as soon as the entries load and multi token queries scan the entries until it is
+ * ready, otherwise it is built by the first multi token query.
+ * <p>
+ * Words and queries are folded alike by a {@link TextNormalizer}. Queries are
+ * folded into a buffer reused by each thread, so that a query answered from
+ * the result cache allocates nothing. A miss allocates its results, a view
+ * over the index, and the copy of the query the cache keeps as its key.
+ * <p>
+ * Between keystrokes {@link #speculate(CharSequence, int, long)} can precompute
+ * the results of the likeliest next keystrokes into a separate cache, so that
+ * the next query is answered without touching the index
+ */
+public class SearchEngine {
+
+    /**
+     * Number of query results kept in the result cache
+     */
+    public static final int RESULT_CACHE_SIZE = 256;
+
+    /**
+     * Name of the core index in {@link #getFootprint()}
+     */
+    public static final String TIER_CORE = "core-index";
+
+    /**
+     * Name of the result cache in {@link #getFootprint()}
+     */
+    public static final String TIER_RESULT_CACHE = "result-cache";
+
+    /**
+     * Number of results kept in the speculative cache, a few keystrokes worth
+     */
+    public static final int SPECULATIVE_CACHE_SIZE = 64;
+
+    /**
+     * Name of the speculative cache in {@link #getFootprint()}
+     */
+    public static final String TIER_SPECULATIVE_CACHE = "speculative-cache";
+
+    /**
+     * Name of the phrase index in {@link #getFootprint()}
+     */
+    public static final String TIER_PHRASE_INDEX = "phrase-index";
+
+    /**
+     * Folds words and queries alike
+     */
+    private final TextNormalizer mNormalizer;
+
+    /**
+     * Stores the buffer each querying thread folds its queries into
+     */
+    private final ThreadLocal<StringBuilder> mQueryBuffers = new ThreadLocal<StringBuilder>() {
+
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+
+    };
+
+    /**
+     * Stores the current index, swapped in whole once loaded
+     */
+    private volatile SearchIndex mIndex = SearchIndex.EMPTY;
+
+    /**
+     * Whether a dictionary has been loaded
+     */
+    private volatile boolean mIsLoaded = false;
+
+    /**
+     * Stores recent results by normalized query
+     */
+    private final QueryCache<List<String>> mResultCache = new QueryCache<>(TIER_RESULT_CACHE, RESULT_CACHE_SIZE);
+
+    /**
+     * Stores results precomputed ahead of the keystrokes, kept apart so
+     * that wrong guesses do not evict the results actually asked for
+     */
+    private final QueryCache<List<String>> mSpeculativeCache =
+            new QueryCache<>(TIER_SPECULATIVE_CACHE, SPECULATIVE_CACHE_SIZE);
+
+    /**
+     * Stores the phrase index of the current entries
+     */
+    private final PhraseTier mPhraseTier = new PhraseTier();
+
+    /**
+     * Runs the builds of the phrase index, null to build it on the querying thread
+     */
+    private volatile Executor mPhraseIndexExecutor;
+
+    /**
+     * Incremented by every real query, speculation started before stops on seeing it change
+     */
+    private final AtomicLong mQueryGeneration = new AtomicLong();
+
+    private final AtomicLong mQueryCount = new AtomicLong();
+    private final AtomicLong mSpeculativeHitCount = new AtomicLong();
+
+    /**
+     * Stores the tiers which can be released under memory pressure
+     */
+    private final List<ResidentTier> mSecondaryTiers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates an engine folding case only
+     */
+    public SearchEngine() {
+        this(TextNormalizer.CASE_FOLDING);
+    }
+
+    /**
+     * @param normalizer Folds words and queries into the form they are compared in
+     */
+    public SearchEngine(TextNormalizer normalizer) {
+        mNormalizer = normalizer;
+        registerSecondaryTier(mResultCache);
+        registerSecondaryTier(mSpeculativeCache);
+        registerSecondaryTier(mPhraseTier);
+    }
+
+    public boolean isLoaded() {
+        return mIsLoaded;
+    }
+
+    /**
+     * Loads the word list replacing the current index. Blocking
+     *
+     * @param in The UTF-8 encoded word list, one word per line
+     * @throws IOException If the stream cannot be read
+     */
+    public void load(InputStream in) throws IOException {
+        mIndex = DictionaryLoader.load(in, mNormalizer);
+        trimMemory();
+        mIsLoaded = true;
+        schedulePhraseIndexBuild(mIndex);
+    }
+
+    /**
+     * Loads an index file prepared by {@link ExternalIndexBuilder} with the
+     * normalizer of this engine, replacing the current index. Blocking
+     *
+     * @param in The index file
+     * @throws IOException If the stream cannot be read or is not a matching index file
+     */
+    public void loadIndex(InputStream in) throws IOException {
+        mIndex = DictionaryLoader.loadIndex(in, mNormalizer);
+        trimMemory();
+        mIsLoaded = true;
+        schedulePhraseIndexBuild(mIndex);
+    }
+
+    /**
+     * Builds the phrase index on the executor from now on, as soon as entries load or
+     * once it has been released, instead of on the first thread asking for it
+     *
+     * @param executor Runs the builds, such as an I/O thread. Null to build on the querying thread
+     */
+    public void setPhraseIndexExecutor(Executor executor) {
+        mPhraseIndexExecutor = executor;
+        schedulePhraseIndexBuild(mIndex);
+    }
+
+    /**
+     * @return Whether multi token queries are answered by the phrase index rather than a scan
+     */
+    public boolean isPhraseIndexReady() {
+        return mPhraseTier.peek(mIndex) != null;
+    }
+
+    /**
+     * Finds the entries starting with the prefix or, if it holds several
+     * tokens, the entries holding a token starting with each of them
+     *
+     * @param startsWith The prefix as typed, normalized here without being copied
+     * @return The matching entries in sorted order
+     */
+    public List<String> query(CharSequence startsWith) {
+        mQueryGeneration.incrementAndGet();
+        mQueryCount.incrementAndGet();
+
+        final StringBuilder prefix = mNormalizer.normalize(startsWith, mQueryBuffers.get());
+        final List<String> cached = mResultCache.get(prefix);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> results = mSpeculativeCache.get(prefix);
+
+        if (results != null) {
+            mSpeculativeHitCount.incrementAndGet();
+        } else {
+            results = search(mIndex, prefix);
+        }
+
+        mResultCache.put(prefix, results);
+        return results;
+    }
+
+    /**
+     * @return A value which changes with every call to {@link #query(CharSequence)}, to
+     * be passed to {@link #speculate(CharSequence, int, long)} right after a query
+     */
+    public long getQueryGeneration() {
+        return mQueryGeneration.get();
+    }
+
+    /**
+     * Precomputes the results of the prefix followed by each of its likeliest next
+     * characters, judged by the number of words below each branch of the index.
+     * Stops as soon as a real query comes in. Meant to run on a low priority thread
+     *
+     * @param startsWith The prefix just answered, as typed
+     * @param budget     Maximum number of next characters to precompute
+     * @param generation Value of {@link #getQueryGeneration()} right after answering the prefix
+     * @return Number of results precomputed
+     */
+    public int speculate(CharSequence startsWith, int budget, long generation) {
+        final StringBuilder next = mNormalizer.normalize(startsWith, mQueryBuffers.get());
+        final int length = next.length();
+        final SearchIndex index = mIndex;
+        final char[] nextChars = new char[budget];
+        final int candidates = index.mostLikelyNextChars(next, nextChars);
+        int computed = 0;
+
+        for (int i = 0; i < candidates && mQueryGeneration.get() == generation; i++) {
+            next.setLength(length);
+            next.append(nextChars[i]);
+
+            if (mResultCache.get(next) == null && mSpeculativeCache.get(next) == null) {
+                mSpeculativeCache.put(next, search(index, next));
+                computed++;
+            }
+        }
+
+        return computed;
+    }
+
+    /**
+     * Answers a normalized query against the given index and the phrase index built over it
+     */
+    private List<String> search(SearchIndex index, StringBuilder prefix) {
+        // Normalized queries separate their tokens by single spaces
+        if (prefix.indexOf(" ") >= 0) {
+            final String[] tokens = PhraseIndex.tokenize(prefix);
+            PhraseIndex phraseIndex = mPhraseTier.peek(index);
+
+            if (phraseIndex == null) {
+                if (mPhraseIndexExecutor != null) {
+                    schedulePhraseIndexBuild(index);
+                } else if (mPhraseTier.claimBuild(index)) {
+                    phraseIndex = mPhraseTier.build(index);
+                }
+            }
+
+            // Scanned while built elsewhere
+            return phraseIndex != null ? phraseIndex.query(tokens) : PhraseIndex.scan(index, tokens);
+        }
+
+        return index.query(prefix);
+    }
+
+    private void schedulePhraseIndexBuild(SearchIndex index) {
+        final Executor executor = mPhraseIndexExecutor;
+
+        if (executor != null && index.size() > 0 && mPhraseTier.claimBuild(index)) {
+            executor.execute(() -> mPhraseTier.build(index));
+        }
+    }
+
+    /**
+     * @return The normalizer folding words and queries
+     */
+    public TextNormalizer getNormalizer() {
+        return mNormalizer;
+    }
+
+    /**
+     * @return Number of queries answered so far
+     */
+    public long getQueryCount() {
+        return mQueryCount.get();
+    }
+
+    /**
+     * @return Number of queries answered from speculatively precomputed results
+     */
+    public long getSpeculativeHitCount() {
+        return mSpeculativeHitCount.get();
+    }
+
+    /**
+     * @return The current index
+     */
+    public SearchIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Releases every secondary tier, keeping only the core index.
+     * They are rebuilt lazily by the queries needing them
+     */
+    public void trimMemory() {
+        for (ResidentTier tier : mSecondaryTiers) {
+            tier.release();
+        }
+    }
+
+    /**
+     * @return Approximate heap footprint of each tier by name, the core index first
+     */
+    public Map<String, Long> getFootprint() {
+        final Map<String, Long> footprint = new LinkedHashMap<>();
+        footprint.put(TIER_CORE, mIndex.estimateFootprintBytes());
+
+        for (ResidentTier tier : mSecondaryTiers) {
+            footprint.put(tier.getName(), tier.estimateFootprintBytes());
+        }
+
+        return footprint;
+    }
+
+    /**
+     * Adds a tier to be released by {@link #trimMemory()} and reported by {@link #getFootprint()}
+     *
+     * @param tier The tier
+     */
+    protected void registerSecondaryTier(ResidentTier tier) {
+        mSecondaryTiers.add(tier);
+    }
+
+    /**
+     * Holds the phrase index of one {@link SearchIndex}, rebuilt whenever asked for another
+     */
+    private static class PhraseTier implements ResidentTier {
+
+        private SearchIndex mSource;
+        private PhraseIndex mPhraseIndex;
+        private SearchIndex mBuilding;
+
+        /**
+         * @return The phrase index of the source, null if not built
+         */
+        synchronized PhraseIndex peek(SearchIndex source) {
+            return mSource == source ? mPhraseIndex : null;
+        }
+
+        /**
+         * Claims the build of the phrase index of the source, to be followed by {@link #build(SearchIndex)}
+         *
+         * @return False if it is built or already claimed
+         */
+        synchronized boolean claimBuild(SearchIndex source) {
+            if ((mSource == source && mPhraseIndex != null) || mBuilding == source) {
+                return false;
+            }
+
+            mBuilding = source;
+            return true;
+        }
+
+        /**
+         * Builds the claimed phrase index of the source outside the lock, so that
+         * queries keep going meanwhile. Releasing the tier drops the build
+         *
+         * @return The phrase index, null if the tier was released in the meantime
+         */
+        PhraseIndex build(SearchIndex source) {
+            synchronized (this) {
+                if (mBuilding != source) {
+                    return null;
+                }
+            }
+
+            PhraseIndex built = null;
+
+            try {
+                built = PhraseIndex.build(source);
+                return built;
+            } finally {
+                synchronized (this) {
+                    if (mBuilding == source) {
+                        mBuilding = null;
+
+                        if (built != null) {
+                            mSource = source;
+                            mPhraseIndex = built;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String getName() {
+            return TIER_PHRASE_INDEX;
+        }
+
+        @Override
+        public synchronized long estimateFootprintBytes() {
+            return mPhraseIndex != null ? mPhraseIndex.estimateFootprintBytes() : 0;
+        }
+
+        @Override
+        public synchronized void release() {
+            mPhraseIndex = null;
+            mSource = null;
+            mBuilding = null;
+        }
+
+    }
+
+}
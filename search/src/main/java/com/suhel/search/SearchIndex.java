@@ -0,0 +1,354 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable index of words sorted lexicographically so that all the
+ * words starting with a prefix form one contiguous range, found with
+ * two binary searches.
+ * <p>
+ * Words are looked up by their normalized keys and returned as their
+ * values, which are the keys themselves unless built with separate values
+ */
+public final class SearchIndex {
+
+    /**
+     * An index without any words
+     */
+    public static final SearchIndex EMPTY = new SearchIndex(new String[0], new String[0]);
+
+    private static final long STRING_OVERHEAD_BYTES = 40;
+    private static final long REFERENCE_BYTES = 4;
+
+    /**
+     * Stores the sorted keys of the words
+     */
+    private final String[] mWords;
+
+    /**
+     * Stores the words to return in the order of their keys, the same array if they are alike
+     */
+    private final String[] mValues;
+
+    /**
+     * Read only view over {@link #mValues} handed out as query results
+     */
+    private final List<String> mWordList;
+
+    /**
+     * Stores the approximate heap footprint, computed once
+     */
+    private final long mFootprintBytes;
+
+    private SearchIndex(String[] sortedWords, String[] values) {
+        mWords = sortedWords;
+        mValues = values;
+        mWordList = Collections.unmodifiableList(Arrays.asList(values));
+
+        long chars = 0;
+        long footprint = sortedWords.length * (STRING_OVERHEAD_BYTES + REFERENCE_BYTES);
+        for (int i = 0; i < sortedWords.length; i++) {
+            chars += sortedWords[i].length();
+
+            // Values sharing the key string cost nothing more
+            if (values[i] != sortedWords[i]) {
+                chars += values[i].length();
+                footprint += STRING_OVERHEAD_BYTES;
+            }
+        }
+
+        // String object and its array headers plus a reference per word
+        if (values != sortedWords) {
+            footprint += sortedWords.length * REFERENCE_BYTES;
+        }
+        mFootprintBytes = footprint + chars * 2;
+    }
+
+    /**
+     * Builds an index out of already normalized words
+     *
+     * @param words The words to index, in any order
+     * @return The index
+     */
+    public static SearchIndex build(Collection<String> words) {
+        final String[] sorted = words.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return new SearchIndex(sorted, sorted);
+    }
+
+    /**
+     * Builds an index looking words up by one form and returning another,
+     * such as accented words found without their accents
+     *
+     * @param keys   The normalized keys, in any order
+     * @param values The words to return for each key, in the same order
+     * @return The index
+     */
+    public static SearchIndex build(List<String> keys, List<String> values) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("Got " + keys.size() + " keys for " + values.size() + " values");
+        }
+
+        final String[] unsortedKeys = keys.toArray(new String[0]);
+        final Integer[] order = new Integer[unsortedKeys.length];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        // Stable, so words with equal keys keep their order
+        Arrays.sort(order, (a, b) -> unsortedKeys[a].compareTo(unsortedKeys[b]));
+
+        final String[] sortedKeys = new String[order.length];
+        final String[] sortedValues = new String[order.length];
+
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = unsortedKeys[order[i]];
+            sortedValues[i] = values.get(order[i]);
+        }
+
+        return new SearchIndex(sortedKeys, sortedValues);
+    }
+
+    /**
+     * Builds an index out of keys already in sorted order, without sorting or copying them
+     *
+     * @param sortedKeys The normalized keys in sorted order
+     * @param values     The words to return for each key, the same array if alike
+     * @return The index
+     * @throws IllegalArgumentException If the keys are out of order
+     */
+    static SearchIndex ofSorted(String[] sortedKeys, String[] values) {
+        if (sortedKeys.length != values.length) {
+            throw new IllegalArgumentException("Got " + sortedKeys.length + " keys for " + values.length + " values");
+        }
+
+        for (int i = 1; i < sortedKeys.length; i++) {
+            if (sortedKeys[i - 1].compareTo(sortedKeys[i]) > 0) {
+                throw new IllegalArgumentException("Key " + i + " is out of order");
+            }
+        }
+
+        return new SearchIndex(sortedKeys, values);
+    }
+
+    /**
+     * @return The number of words in the index
+     */
+    public int size() {
+        return mWords.length;
+    }
+
+    /**
+     * @return Approximate number of bytes the words take on the heap
+     */
+    public long estimateFootprintBytes() {
+        return mFootprintBytes;
+    }
+
+    /**
+     * @param index Index in sorted order
+     * @return The word at the index
+     */
+    public String get(int index) {
+        return mValues[index];
+    }
+
+    /**
+     * @param index Index in sorted order
+     * @return The normalized key of the word at the index
+     */
+    public String getKey(int index) {
+        return mWords[index];
+    }
+
+    /**
+     * Returns all the words starting with the prefix in sorted order.
+     * The returned list is a view over the index and is not copied.
+     * The prefix is compared in place and may be a reused buffer
+     *
+     * @param prefix The normalized prefix
+     * @return The matching words, empty if none or if the prefix is empty
+     */
+    public List<String> query(CharSequence prefix) {
+        if (prefix.length() == 0) {
+            return Collections.emptyList();
+        }
+
+        final int from = lowerBound(prefix);
+        final int to = prefixEnd(prefix, from);
+
+        return from < to ? mWordList.subList(from, to) : Collections.<String>emptyList();
+    }
+
+    /**
+     * @param prefix The normalized prefix
+     * @return The number of words starting with the prefix
+     */
+    public int count(CharSequence prefix) {
+        final int from = lowerBound(prefix);
+        return prefixEnd(prefix, from) - from;
+    }
+
+    /**
+     * Finds the characters which most often follow the prefix, weighing each
+     * branch below the prefix by the number of words in it. Takes one binary
+     * search per distinct next character
+     *
+     * @param prefix The normalized prefix
+     * @param out    Receives the characters, the most frequent first
+     * @return Number of characters written, at most the length of {@code out}
+     */
+    public int mostLikelyNextChars(CharSequence prefix, char[] out) {
+        final int length = prefix.length();
+        final int[] counts = new int[out.length];
+        final StringBuilder branch = new StringBuilder(length + 1).append(prefix).append('\0');
+        int found = 0;
+        int i = lowerBound(prefix);
+        final int end = prefixEnd(prefix, i);
+
+        while (i < end) {
+            // The prefix itself is a word
+            if (mWords[i].length() == length) {
+                i++;
+                continue;
+            }
+
+            final char next = mWords[i].charAt(length);
+            branch.setCharAt(length, next);
+            final int branchEnd = prefixEnd(branch, i);
+            final int count = branchEnd - i;
+
+            // Insertion into the top list, which is tiny
+            int at = found < out.length ? found++ : out.length;
+            while (at > 0 && counts[at - 1] < count) {
+                if (at < out.length) {
+                    counts[at] = counts[at - 1];
+                    out[at] = out[at - 1];
+                }
+                at--;
+            }
+            if (at < out.length) {
+                counts[at] = count;
+                out[at] = next;
+            }
+
+            i = branchEnd;
+        }
+
+        return found;
+    }
+
+    /**
+     * @param key The key to look for
+     * @return Index of the first word not less than the key
+     */
+    int lowerBound(CharSequence key) {
+        int lo = 0;
+        int hi = mWords.length;
+
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+
+            if (compare(mWords[mid], key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * @param prefix The prefix
+     * @param from   Index of the first word not less than the prefix
+     * @return Index right after the last word starting with the prefix
+     */
+    int prefixEnd(CharSequence prefix, int from) {
+        int lo = from;
+        int hi = mWords.length;
+
+        // Words from 'from' onwards are not less than the prefix,
+        // so the ones starting with it come first
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+
+            if (startsWith(mWords[mid], prefix)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * Compares like {@link String#compareTo(String)} without turning the key into a string
+     */
+    private static int compare(String word, CharSequence key) {
+        if (key instanceof String) {
+            return word.compareTo((String) key);
+        }
+
+        final int length = Math.min(word.length(), key.length());
+
+        for (int i = 0; i < length; i++) {
+            final int diff = word.charAt(i) - key.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+
+        return word.length() - key.length();
+    }
+
+    private static boolean startsWith(String word, CharSequence prefix) {
+        if (prefix instanceof String) {
+            return word.startsWith((String) prefix);
+        }
+
+        final int length = prefix.length();
+
+        if (word.length() < length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search;
+
+import java.text.Normalizer;
+
+/**
+ * Folds words and queries into the form they are compared in: lowercase,
+ * whitespace runs collapsed into single spaces and, optionally, accents
+ * dropped so that {@code cafe} finds {@code café}.
+ * <p>
+ * Folding works one character at a time through {@link Character#toLowerCase(char)}
+ * and a table built once, so the results do not depend on the default locale and
+ * a query can be folded into a reused buffer without allocating
+ */
+public final class TextNormalizer {
+
+    /**
+     * Folds case and whitespace only
+     */
+    public static final TextNormalizer CASE_FOLDING = new TextNormalizer(false);
+
+    /**
+     * Folds case, whitespace and the accents of Latin and Greek letters
+     */
+    public static final TextNormalizer CASE_AND_DIACRITIC_FOLDING = new TextNormalizer(true);
+
+    private final boolean mFoldDiacritics;
+
+    private TextNormalizer(boolean foldDiacritics) {
+        mFoldDiacritics = foldDiacritics;
+    }
+
+    /**
+     * @return Whether accents are dropped
+     */
+    public boolean isFoldingDiacritics() {
+        return mFoldDiacritics;
+    }
+
+    /**
+     * @param c The character
+     * @return The folded character
+     */
+    public char fold(char c) {
+        if (mFoldDiacritics && c < DiacriticFolds.TABLE_SIZE) {
+            return DiacriticFolds.TABLE[c];
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Replaces the content of the buffer with the folded text, trimmed and
+     * with whitespace runs turned into single spaces. Does not allocate
+     * unless the buffer has to grow
+     *
+     * @param text The text to fold
+     * @param out  The buffer receiving the folded text
+     * @return The buffer
+     */
+    public StringBuilder normalize(CharSequence text, StringBuilder out) {
+        final int length = text.length();
+        boolean pendingSpace = false;
+        out.setLength(0);
+
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+            } else if (!mFoldDiacritics || !DiacriticFolds.isCombiningMark(c)) {
+                if (pendingSpace) {
+                    out.append(' ');
+                    pendingSpace = false;
+                }
+                out.append(fold(c));
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * @param text The text to fold
+     * @return The folded text, see {@link #normalize(CharSequence, StringBuilder)}
+     */
+    public String normalize(CharSequence text) {
+        return normalize(text, new StringBuilder(text.length())).toString();
+    }
+
+    /**
+     * Folds of the characters below {@link #TABLE_SIZE}, built on first use
+     */
+    private static final class DiacriticFolds {
+
+        /**
+         * Covers Latin, its extensions and Greek, where marks are accents
+         * rather than parts of distinct letters as they are in Cyrillic
+         */
+        static final int TABLE_SIZE = 0x2000;
+
+        private static final int COMBINING_MARKS_START = 0x0300;
+        private static final int COMBINING_MARKS_END = 0x0370;
+        private static final int CYRILLIC_START = 0x0400;
+        private static final int LATIN_EXTENDED_ADDITIONAL_START = 0x1E00;
+
+        static final char[] TABLE = new char[TABLE_SIZE];
+
+        static {
+            for (int c = 0; c < TABLE_SIZE; c++) {
+                char base = (char) c;
+
+                if (c < CYRILLIC_START || c >= LATIN_EXTENDED_ADDITIONAL_START) {
+                    final String decomposed = Normalizer.normalize(String.valueOf(base), Normalizer.Form.NFD);
+
+                    if (decomposed.length() > 1 && onlyMarksAfterFirst(decomposed)) {
+                        base = decomposed.charAt(0);
+                    }
+                }
+
+                TABLE[c] = Character.toLowerCase(base);
+            }
+        }
+
+        static boolean isCombiningMark(char c) {
+            return c >= COMBINING_MARKS_START && c < COMBINING_MARKS_END;
+        }
+
+        private static boolean onlyMarksAfterFirst(String decomposed) {
+            for (int i = 1; i < decomposed.length(); i++) {
+                if (Character.getType(decomposed.charAt(i)) != Character.NON_SPACING_MARK) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.metrics;
+
+import java.util.Locale;
+
+/**
+ * An immutable copy of a {@link LatencyHistogram}
+ */
+public final class HistogramSnapshot {
+
+    private final long[] mBuckets;
+    private final long mCount;
+    private final long mSum;
+    private final long mMax;
+
+    HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+        mBuckets = buckets;
+        mCount = count;
+        mSum = sum;
+        mMax = max;
+    }
+
+    /**
+     * @return Number of recorded values
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return Mean of the recorded values in nanoseconds, 0 if none
+     */
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * @return Largest recorded value in nanoseconds
+     */
+    public long getMaxNanos() {
+        return mMax;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100
+     * @return Upper bound of the bucket holding the percentile in nanoseconds,
+     * never more than the largest recorded value, 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0;
+
+        for (long bucket : mBuckets) {
+            total += bucket;
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+
+        for (int i = 0; i < mBuckets.length; i++) {
+            seen += mBuckets[i];
+
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.upperBoundOf(i), mMax);
+            }
+        }
+
+        return mMax;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "count=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                mCount,
+                getMeanNanos() / 1e6,
+                getPercentileNanos(50) / 1e6,
+                getPercentileNanos(90) / 1e6,
+                getPercentileNanos(99) / 1e6,
+                mMax / 1e6);
+    }
+
+}
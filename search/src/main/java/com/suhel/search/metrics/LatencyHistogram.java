@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations in nanoseconds with a fixed memory footprint.
+ * <p>
+ * Buckets are log linear: every power of two is split into
+ * {@value #SUB_BUCKETS} equal sub buckets, so any recorded value is
+ * reported within 12.5% of itself from 8ns up to centuries.
+ * Recording is a handful of atomic increments and never allocates
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Sub buckets per power of two, as a power of two
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values below {@link #SUB_BUCKETS} get a bucket each,
+     * the rest get {@link #SUB_BUCKETS} per power of two up to 2^63
+     */
+    static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a duration. Negative durations are recorded as 0
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0L);
+
+        mBuckets.incrementAndGet(bucketOf(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+            // Retry until this value is stored or a larger one wins
+        }
+    }
+
+    /**
+     * Clears all the recorded values. Values recorded concurrently may be partly lost
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * Copies the current state. Values recorded concurrently
+     * may or may not be part of the copy
+     *
+     * @return The copy
+     */
+    public HistogramSnapshot snapshot() {
+        final long[] buckets = new long[BUCKET_COUNT];
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+        }
+
+        return new HistogramSnapshot(buckets, mCount.get(), mSum.get(), mMax.get());
+    }
+
+    /**
+     * @param value A non negative value
+     * @return Index of the bucket holding the value
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @param bucket Index of a bucket
+     * @return The largest value the bucket holds
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        final long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+        return ((SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+}
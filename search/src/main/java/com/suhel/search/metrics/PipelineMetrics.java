@@ -0,0 +1,223 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.metrics;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how long each {@link PipelineStage} takes into one
+ * {@link LatencyHistogram} per stage.
+ * <p>
+ * Disabled by default, in which case every method returns after reading
+ * one volatile flag. Stages spanning threads are timed with
+ * {@link #begin(PipelineStage)} or {@link #beginIfIdle(PipelineStage)} and
+ * {@link #end(PipelineStage)} or {@link #cancel(PipelineStage)}, which keep
+ * one open start time per stage since the pipeline handles one query at a time
+ */
+public final class PipelineMetrics {
+
+    private static final PipelineStage[] STAGES = PipelineStage.values();
+
+    /**
+     * Marks a stage without an open start time
+     */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[STAGES.length];
+    private final AtomicLongArray mStartTimes = new AtomicLongArray(STAGES.length);
+    private volatile boolean mIsEnabled;
+    private volatile MetricsListener mListener;
+
+    PipelineMetrics() {
+        for (int i = 0; i < STAGES.length; i++) {
+            mHistograms[i] = new LatencyHistogram();
+            mStartTimes.set(i, NOT_STARTED);
+        }
+    }
+
+    /**
+     * @return The metrics shared by the whole pipeline
+     */
+    public static PipelineMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return mIsEnabled;
+    }
+
+    /**
+     * Turns recording on or off. Open stages are dropped when turned off
+     *
+     * @param enabled Whether to record
+     */
+    public void setEnabled(boolean enabled) {
+        mIsEnabled = enabled;
+
+        if (!enabled) {
+            for (int i = 0; i < STAGES.length; i++) {
+                mStartTimes.set(i, NOT_STARTED);
+            }
+        }
+    }
+
+    /**
+     * @param listener The listener to receive every recorded duration, or null
+     */
+    public void setListener(MetricsListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @return The current time for timing a stage, 0 when disabled
+     * so that callers can skip the clock read
+     */
+    public long now() {
+        return mIsEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Opens a stage, restarting it if it is already open
+     *
+     * @param stage The stage
+     */
+    public void begin(PipelineStage stage) {
+        if (mIsEnabled) {
+            mStartTimes.set(stage.ordinal(), System.nanoTime());
+        }
+    }
+
+    /**
+     * Opens a stage unless it is already open, so that a burst of
+     * events is timed from its first one
+     *
+     * @param stage The stage
+     */
+    public void beginIfIdle(PipelineStage stage) {
+        if (mIsEnabled) {
+            mStartTimes.compareAndSet(stage.ordinal(), NOT_STARTED, System.nanoTime());
+        }
+    }
+
+    /**
+     * Closes a stage and records the time since it was opened.
+     * Does nothing if the stage is not open
+     *
+     * @param stage The stage
+     */
+    public void end(PipelineStage stage) {
+        if (mIsEnabled) {
+            final long start = mStartTimes.getAndSet(stage.ordinal(), NOT_STARTED);
+
+            if (start != NOT_STARTED) {
+                record(stage, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Closes a stage without recording it, such as when the work it
+     * times was skipped. Does nothing if the stage is not open
+     *
+     * @param stage The stage
+     */
+    public void cancel(PipelineStage stage) {
+        if (mIsEnabled) {
+            mStartTimes.set(stage.ordinal(), NOT_STARTED);
+        }
+    }
+
+    /**
+     * Records the time elapsed since a value returned by {@link #now()}
+     *
+     * @param stage The stage
+     * @param start The start time from {@link #now()}
+     */
+    public void recordSince(PipelineStage stage, long start) {
+        if (mIsEnabled && start != 0) {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a duration
+     *
+     * @param stage The stage
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(PipelineStage stage, long nanos) {
+        if (!mIsEnabled) {
+            return;
+        }
+
+        mHistograms[stage.ordinal()].record(nanos);
+
+        final MetricsListener listener = mListener;
+
+        if (listener != null) {
+            listener.onRecorded(stage, nanos);
+        }
+    }
+
+    /**
+     * @param stage The stage
+     * @return A copy of the histogram of the stage
+     */
+    public HistogramSnapshot snapshot(PipelineStage stage) {
+        return mHistograms[stage.ordinal()].snapshot();
+    }
+
+    /**
+     * Clears all the histograms
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes a snapshot of every stage, one per line
+     *
+     * @param prefix Prefix of each line
+     * @param writer The writer
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("Pipeline metrics" + (mIsEnabled ? "" : " (disabled)"));
+
+        for (PipelineStage stage : STAGES) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(stage.name());
+            writer.print(": ");
+            writer.println(snapshot(stage));
+        }
+    }
+
+}
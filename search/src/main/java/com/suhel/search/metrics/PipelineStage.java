@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.search.metrics;
+
+/**
+ * The stages a keystroke goes through until its suggestions are on screen
+ */
+public enum PipelineStage {
+
+    /**
+     * From the first keystroke of a burst until the query for it starts
+     */
+    KEYSTROKE_TO_QUERY,
+
+    /**
+     * Running the query against the index
+     */
+    QUERY_EXECUTION,
+
+    /**
+     * From the results being ready until the main thread receives them
+     */
+    RESULT_DELIVERY,
+
+    /**
+     * Binding a single row of the results
+     */
+    ADAPTER_BIND,
+
+    /**
+     * From the results being handed to the adapter until the next frame is drawn
+     */
+    FIRST_FRAME
+
+}
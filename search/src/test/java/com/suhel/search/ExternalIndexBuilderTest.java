@@ -0,0 +1,166 @@
+package com.suhel.search;
+
+import com.suhel.search.loadtest.DictionaryGenerator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class ExternalIndexBuilderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void build_sortsAndDedupsAcrossRuns() throws IOException {
+        final byte[] words = new DictionaryGenerator.Builder()
+                .setSize(5_000)
+                .setSeed(3L)
+                .build()
+                .generateWordList();
+        final File tempDir = folder.newFolder("runs");
+        final File out = new File(folder.getRoot(), "words.idx");
+
+        final ExternalIndexBuilder.Result result = new ExternalIndexBuilder.Builder()
+                .setTempDir(tempDir)
+                .setChunkBytes(20_000)
+                .setMergeFanIn(3)
+                .build()
+                .build(new ByteArrayInputStream(words), out);
+
+        // Expected straight from the in-memory loader, deduplicated
+        final SearchIndex inMemory = DictionaryLoader.load(new ByteArrayInputStream(words));
+        final TreeSet<String> expected = new TreeSet<>();
+        for (int i = 0; i < inMemory.size(); i++) {
+            expected.add(inMemory.get(i));
+        }
+
+        final SearchIndex index = DictionaryLoader.loadIndex(new FileInputStream(out), TextNormalizer.CASE_FOLDING);
+
+        assertEquals(new ArrayList<>(expected), toList(index));
+        assertEquals(expected.size(), result.getEntriesWritten());
+        assertEquals(inMemory.size() - expected.size(), result.getDuplicatesDropped());
+        assertTrue(result.getRunCount() > 9);
+        assertTrue(result.getMergePasses() > 1);
+        assertTrue(result.getLargestChunk() < 1_000);
+        assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void build_keepsAccentedValuesApart() throws IOException {
+        final File out = new File(folder.getRoot(), "accents.idx");
+        final String words = "Café\ncafe\nCAFE\ncafé\nApple\n";
+
+        new ExternalIndexBuilder.Builder()
+                .setNormalizer(TextNormalizer.CASE_AND_DIACRITIC_FOLDING)
+                .setTempDir(folder.getRoot())
+                .setChunkBytes(100)
+                .build()
+                .build(new ByteArrayInputStream(words.getBytes(StandardCharsets.UTF_8)), out);
+
+        final SearchEngine engine = new SearchEngine(TextNormalizer.CASE_AND_DIACRITIC_FOLDING);
+        engine.loadIndex(new FileInputStream(out));
+
+        assertEquals(Arrays.asList("cafe", "café"), engine.query("CAFÉ"));
+        assertEquals(3, engine.getIndex().size());
+    }
+
+    @Test(expected = IOException.class)
+    public void loadIndex_rejectsOtherNormalization() throws IOException {
+        final File out = new File(folder.getRoot(), "case.idx");
+        new ExternalIndexBuilder.Builder()
+                .setTempDir(folder.getRoot())
+                .build()
+                .build(new ByteArrayInputStream("a\n".getBytes(StandardCharsets.UTF_8)), out);
+
+        DictionaryLoader.loadIndex(new FileInputStream(out), TextNormalizer.CASE_AND_DIACRITIC_FOLDING);
+    }
+
+    @Test
+    public void build_failedMoveLeavesNoFiles() throws IOException {
+        final File tempDir = folder.newFolder("runs");
+        // A directory which is not empty cannot be replaced by the index file
+        final File out = folder.newFolder("words.idx");
+        new File(out, "keep").createNewFile();
+
+        try {
+            newMultiPassBuilder(tempDir).build(new ByteArrayInputStream(generateWords()), out);
+            fail("Replaced a directory");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        assertEquals(0, tempDir.list().length);
+        assertFalse(new File(out.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void build_failedReadLeavesNoRuns() throws IOException {
+        final File tempDir = folder.newFolder("runs");
+        final byte[] words = generateWords();
+        // Fails once several runs have been spilled
+        final InputStream in = new FilterInputStream(new ByteArrayInputStream(words)) {
+
+            private int mRead;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (mRead > words.length / 2) {
+                    throw new IOException("Failed");
+                }
+                final int read = super.read(b, off, Math.min(len, 1024));
+                mRead += Math.max(read, 0);
+                return read;
+            }
+
+        };
+
+        try {
+            newMultiPassBuilder(tempDir).build(in, new File(folder.getRoot(), "words.idx"));
+            fail("Read past a failure");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        assertEquals(0, tempDir.list().length);
+        assertFalse(new File(folder.getRoot(), "words.idx").exists());
+    }
+
+    private static ExternalIndexBuilder newMultiPassBuilder(File tempDir) {
+        return new ExternalIndexBuilder.Builder()
+                .setTempDir(tempDir)
+                .setChunkBytes(20_000)
+                .setMergeFanIn(3)
+                .build();
+    }
+
+    private static byte[] generateWords() {
+        return new DictionaryGenerator.Builder()
+                .setSize(5_000)
+                .setSeed(3L)
+                .build()
+                .generateWordList();
+    }
+
+    private static List<String> toList(SearchIndex index) {
+        final List<String> words = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            words.add(index.get(i));
+        }
+        return words;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.suhel.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PhraseIndexTest {
+
+    private static PhraseIndex index(String... entries) {
+        return PhraseIndex.build(SearchIndex.build(Arrays.asList(entries)));
+    }
+
+    @Test
+    public void query_matchesEveryTokenPrefixInAnyOrder() {
+        final PhraseIndex index = index(
+                "apple iphone case", "apple watch band", "samsung galaxy case",
+                "iphone charger", "watch case apple", "case");
+
+        assertEquals(Arrays.asList("apple iphone case", "watch case apple"), index.query("app", "case"));
+        assertEquals(Arrays.asList("apple iphone case", "apple watch band", "watch case apple"), index.query("apple"));
+        assertEquals(Collections.singletonList("apple watch band"), index.query("wat", "ban", "ap"));
+        assertEquals(Arrays.asList("apple iphone case", "iphone charger"), index.query("i"));
+    }
+
+    @Test
+    public void query_noMatch() {
+        final PhraseIndex index = index("new york", "new delhi", "york minster");
+
+        assertTrue(index.query("new", "minster").isEmpty());
+        assertTrue(index.query("z").isEmpty());
+        assertTrue(index.query().isEmpty());
+    }
+
+    @Test
+    public void query_repeatedTokensCountOnce() {
+        final PhraseIndex index = index("new new york", "newark", "new town");
+
+        assertEquals(Arrays.asList("new new york", "new town", "newark"), index.query("ne"));
+        assertEquals(Collections.singletonList("new new york"), index.query("new", "y"));
+        assertEquals(4, index.getTokenCount());
+    }
+
+    @Test
+    public void tokenize_splitsOnWhitespaceRuns() {
+        assertArrayEquals(new String[]{"a", "bc", "d"}, PhraseIndex.tokenize("  a bc\t\td "));
+        assertEquals(0, PhraseIndex.tokenize("   ").length);
+    }
+
+    @Test
+    public void intersect_agreesWhetherWalkingOrGalloping() {
+        final Random random = new Random(7);
+
+        for (int round = 0; round < 200; round++) {
+            final int[] small = randomList(random, 1 + random.nextInt(20), 2000);
+            final int[] large = randomList(random, 1 + random.nextInt(1500), 2000);
+            final List<Integer> expected = new ArrayList<>();
+
+            for (int id : small) {
+                if (Arrays.binarySearch(large, id) >= 0) {
+                    expected.add(id);
+                }
+            }
+
+            final int[] walked = small.clone();
+            final int[] galloped = small.clone();
+            final int walkedLength = PostingLists.intersect(walked, walked.length, large, 0, large.length);
+            final int gallopedLength = PostingLists.gallop(galloped, galloped.length, large, 0, large.length);
+
+            assertEquals(expected, toList(walked, walkedLength));
+            assertEquals(expected, toList(galloped, gallopedLength));
+        }
+    }
+
+    @Test
+    public void phraseQuery_throughEngine() throws IOException {
+        final SearchEngine engine = new SearchEngine();
+        engine.load(new ByteArrayInputStream("New York\nNew Delhi\nYork\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Collections.singletonList("new york"), engine.query("ne Yo"));
+        assertEquals(Collections.singletonList("new york"), engine.query("new y"));
+        assertEquals(Arrays.asList("new delhi", "new york"), engine.query("new"));
+        assertTrue(engine.getFootprint().get(SearchEngine.TIER_PHRASE_INDEX) > 0);
+    }
+
+    @Test
+    public void scan_agreesWithIndex() {
+        final String[] entries = {
+                "apple iphone case", "apple watch band", "samsung galaxy case",
+                "iphone charger", "watch case apple", "case", "new new york"};
+        final PhraseIndex index = index(entries);
+        final SearchIndex source = SearchIndex.build(Arrays.asList(entries));
+        final String[][] queries = {{"app", "case"}, {"apple"}, {"wat", "ban", "ap"}, {"i"}, {"new", "yo"}, {"x"}, {}};
+
+        for (String[] query : queries) {
+            assertEquals(Arrays.toString(query), index.query(query), PhraseIndex.scan(source, query));
+        }
+    }
+
+    @Test
+    public void phraseQuery_scansUntilBuiltOnExecutor() throws IOException {
+        final Queue<Runnable> builds = new ArrayDeque<>();
+        final SearchEngine engine = new SearchEngine();
+        engine.setPhraseIndexExecutor(builds::add);
+        engine.load(new ByteArrayInputStream("New York\nNew Delhi\nYork\n".getBytes(StandardCharsets.UTF_8)));
+
+        // Scheduled as soon as loaded, not built by the query
+        assertEquals(1, builds.size());
+        assertEquals(Collections.singletonList("new york"), engine.query("ne Yo"));
+        assertFalse(engine.isPhraseIndexReady());
+        assertEquals(1, builds.size());
+
+        builds.poll().run();
+        assertTrue(engine.isPhraseIndexReady());
+        assertEquals(Collections.singletonList("new york"), engine.query("new y"));
+
+        // Released under memory pressure, rebuilt once asked for again
+        engine.trimMemory();
+        assertEquals(Collections.singletonList("new york"), engine.query("york ne"));
+        assertEquals(1, builds.size());
+        builds.poll().run();
+        assertTrue(engine.isPhraseIndexReady());
+    }
+
+    private static int[] randomList(Random random, int count, int bound) {
+        final int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = random.nextInt(bound);
+        }
+        return Arrays.copyOf(ids, PostingLists.sortDistinct(ids, count));
+    }
+
+    private static List<Integer> toList(int[] ids, int length) {
+        final List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            list.add(ids[i]);
+        }
+        return list;
+    }
+
+}
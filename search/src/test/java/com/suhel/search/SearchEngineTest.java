@@ -0,0 +1,93 @@
+package com.suhel.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SearchEngineTest {
+
+    private SearchEngine engine;
+
+    @Before
+    public void setUp() throws IOException {
+        engine = new SearchEngine();
+        engine.load(new ByteArrayInputStream("cat\ncar\ncart\ndog\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void query_servesRepeatsFromResultCache() {
+        final List<String> first = engine.query("ca");
+
+        assertSame(first, engine.query("CA"));
+        assertEquals(Arrays.asList("car", "cart", "cat"), first);
+    }
+
+    @Test
+    public void trimMemory_dropsSecondaryTiersAndRebuildsOnDemand() {
+        engine.query("ca");
+        engine.query("d");
+        assertTrue(engine.getFootprint().get(SearchEngine.TIER_RESULT_CACHE) > 0);
+
+        engine.trimMemory();
+
+        final Map<String, Long> footprint = engine.getFootprint();
+        assertEquals(0L, (long) footprint.get(SearchEngine.TIER_RESULT_CACHE));
+        assertTrue(footprint.get(SearchEngine.TIER_CORE) > 0);
+        assertEquals(Arrays.asList("car", "cart", "cat"), engine.query("ca"));
+        assertTrue(engine.getFootprint().get(SearchEngine.TIER_RESULT_CACHE) > 0);
+    }
+
+    @Test
+    public void resultCache_evictsLeastRecentlyUsed() {
+        final QueryCache<String> cache = new QueryCache<>("test", 2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void speculate_precomputesLikeliestNextKeystrokes() {
+        engine.query("c");
+        final int computed = engine.speculate("c", 2, engine.getQueryGeneration());
+
+        // "ca" is the only branch below "c"
+        assertEquals(1, computed);
+        assertEquals(Arrays.asList("car", "cart", "cat"), engine.query("ca"));
+        assertEquals(1, engine.getSpeculativeHitCount());
+        assertEquals(2, engine.getQueryCount());
+    }
+
+    @Test
+    public void speculate_stopsOnceRealInputArrives() {
+        engine.query("ca");
+        final long generation = engine.getQueryGeneration();
+        engine.query("car");
+
+        assertEquals(0, engine.speculate("ca", 3, generation));
+    }
+
+    @Test
+    public void mostLikelyNextChars_ordersBranchesBySize() {
+        final SearchIndex index = SearchIndex.build(Arrays.asList(
+                "ta", "tb", "tba", "tbb", "tc", "tca", "t", "tcb", "tcc"));
+        final char[] out = new char[2];
+
+        assertEquals(2, index.mostLikelyNextChars("t", out));
+        assertArrayEquals(new char[]{'c', 'b'}, out);
+        assertEquals(0, index.mostLikelyNextChars("tcc", new char[2]));
+    }
+
+}
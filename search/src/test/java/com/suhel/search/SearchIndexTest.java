@@ -0,0 +1,60 @@
+package com.suhel.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    private static SearchIndex index(String... words) {
+        return SearchIndex.build(Arrays.asList(words));
+    }
+
+    @Test
+    public void query_returnsSortedPrefixRange() {
+        final SearchIndex index = index("banana", "apple", "apricot", "app", "bandana", "cherry");
+
+        assertEquals(Arrays.asList("app", "apple", "apricot"), index.query("ap"));
+        assertEquals(Arrays.asList("app", "apple"), index.query("app"));
+        assertEquals(Arrays.asList("banana", "bandana"), index.query("ban"));
+        assertEquals(Collections.singletonList("cherry"), index.query("c"));
+    }
+
+    @Test
+    public void query_noMatchOrEmptyPrefix() {
+        final SearchIndex index = index("apple", "banana");
+
+        assertTrue(index.query("z").isEmpty());
+        assertTrue(index.query("0").isEmpty());
+        assertTrue(index.query("applesauce").isEmpty());
+        assertTrue(index.query("").isEmpty());
+        assertTrue(SearchIndex.EMPTY.query("a").isEmpty());
+    }
+
+    @Test
+    public void count_matchesQuery() {
+        final SearchIndex index = index("a", "ab", "abc", "b");
+
+        assertEquals(3, index.count("a"));
+        assertEquals(2, index.count("ab"));
+        assertEquals(0, index.count("c"));
+    }
+
+    @Test
+    public void engine_loadsAndNormalizes() throws IOException {
+        final SearchEngine engine = new SearchEngine();
+        assertFalse(engine.isLoaded());
+
+        engine.load(new ByteArrayInputStream("Zebra\nzeal\nAlpha\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(engine.isLoaded());
+        assertEquals(Arrays.asList("zeal", "zebra"), engine.query("ZE"));
+    }
+
+}
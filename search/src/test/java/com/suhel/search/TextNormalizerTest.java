@@ -0,0 +1,96 @@
+package com.suhel.search;
+
+import com.suhel.testing.AllocationCounter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class TextNormalizerTest {
+
+    @Test
+    public void normalize_foldsCaseAndWhitespace() {
+        assertEquals("new york city", TextNormalizer.CASE_FOLDING.normalize("  New\tYORK   City "));
+        assertEquals("café", TextNormalizer.CASE_FOLDING.normalize("CAFÉ"));
+        assertEquals("", TextNormalizer.CASE_FOLDING.normalize("   "));
+    }
+
+    @Test
+    public void normalize_foldsDiacriticsWhenAsked() {
+        final TextNormalizer normalizer = TextNormalizer.CASE_AND_DIACRITIC_FOLDING;
+
+        assertEquals("cafe creme", normalizer.normalize("Café Crème"));
+        assertEquals("naive", normalizer.normalize("naïve"));
+        assertEquals("αθηνα", normalizer.normalize("Αθήνα"));
+        // Distinct letters in Cyrillic
+        assertEquals("й", normalizer.normalize("Й"));
+    }
+
+    @Test
+    public void normalize_ignoresDefaultLocale() {
+        final Locale locale = Locale.getDefault();
+
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals("istanbul", TextNormalizer.CASE_FOLDING.normalize("ISTANBUL"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void normalize_reusesBuffer() {
+        final StringBuilder buffer = new StringBuilder("leftover");
+
+        assertSame(buffer, TextNormalizer.CASE_FOLDING.normalize("Ab", buffer));
+        assertEquals("ab", buffer.toString());
+    }
+
+    @Test
+    public void engine_findsAccentedWordsWithoutAccents() throws IOException {
+        final SearchEngine engine = new SearchEngine(TextNormalizer.CASE_AND_DIACRITIC_FOLDING);
+        engine.load(new ByteArrayInputStream("Café\ncafeteria\nCrème brûlée\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Arrays.asList("café", "cafeteria"), engine.query("cafe"));
+        assertEquals(Arrays.asList("café", "cafeteria"), engine.query(new StringBuilder("CAFÉ")));
+        assertEquals(Collections.singletonList("crème brûlée"), engine.query("creme bru"));
+    }
+
+    @Test
+    public void engine_cachedQueriesDoNotAllocate() throws IOException {
+        final AllocationCounter counter = AllocationCounter.forCurrentThread();
+        assumeTrue(counter != null);
+
+        final SearchEngine engine = new SearchEngine();
+        engine.load(new ByteArrayInputStream("apple\napricot\nbanana\n".getBytes(StandardCharsets.UTF_8)));
+        final StringBuilder typed = new StringBuilder("Ap");
+        final List<String> expected = engine.query(typed);
+
+        // Warm up class loading and the thread's buffer
+        for (int i = 0; i < 10_000; i++) {
+            engine.query(typed);
+        }
+
+        final long before = counter.allocatedBytes();
+        List<String> results = null;
+
+        for (int i = 0; i < 10_000; i++) {
+            results = engine.query(typed);
+        }
+
+        final long allocated = counter.allocatedBytes() - before;
+
+        assertSame(expected, results);
+        // Leaves room for the measurement itself
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+}
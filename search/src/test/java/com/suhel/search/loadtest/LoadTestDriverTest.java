@@ -0,0 +1,125 @@
+package com.suhel.search.loadtest;
+
+import com.suhel.search.SearchEngine;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LoadTestDriverTest {
+
+    private static DictionaryGenerator generator(int size, long seed) {
+        return new DictionaryGenerator.Builder()
+                .setSize(size)
+                .setSeed(seed)
+                .setUnicodeRatio(0.1)
+                .setDuplicateRatio(0.05)
+                .setLongTailRatio(0.05)
+                .build();
+    }
+
+    @Test
+    public void generator_isDeterministic() {
+        assertArrayEquals(generator(5_000, 7).generate(), generator(5_000, 7).generate());
+        assertFalse(Arrays.equals(generator(5_000, 7).generate(), generator(5_000, 8).generate()));
+    }
+
+    @Test
+    public void generator_producesDuplicatesUnicodeAndLongTail() {
+        final String[] words = generator(20_000, 1).generate();
+        final Set<String> distinct = new HashSet<>(Arrays.asList(words));
+        int nonAscii = 0;
+        int longWords = 0;
+
+        for (String word : words) {
+            assertFalse(word.isEmpty());
+
+            if (word.chars().anyMatch(c -> c > 0x7f)) {
+                nonAscii++;
+            }
+
+            if (word.length() > 20) {
+                longWords++;
+            }
+        }
+
+        assertTrue(distinct.size() < words.length);
+        assertTrue(nonAscii > words.length / 50);
+        assertTrue(longWords > 0);
+    }
+
+    @Test
+    public void zipfSampler_favoursLowRanks() {
+        final ZipfSampler sampler = new ZipfSampler(1000, 1.0);
+        final Random random = new Random(3);
+        int top10 = 0;
+
+        for (int i = 0; i < 10_000; i++) {
+            if (sampler.sample(random) < 10) {
+                top10++;
+            }
+        }
+
+        // The first 10 of 1000 ranks hold about 39% of the mass at exponent 1
+        assertTrue(top10 > 3_000);
+    }
+
+    @Test
+    public void session_parsesRecording() throws IOException {
+        final List<TypingSession> sessions = TypingSession.parse(new StringReader(
+                "# first\n0 c\n120 a\n90 x\n200 BACKSPACE\n80 t\n# second\n0 d\n100 SPACE\n"));
+
+        assertEquals(2, sessions.size());
+        assertEquals(5, sessions.get(0).size());
+        assertEquals(TypingSession.KEY_BACKSPACE, sessions.get(0).getKey(3));
+        assertEquals(200, sessions.get(0).getDelayMillis(3));
+        assertEquals(' ', sessions.get(1).getKey(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void session_rejectsMalformedLine() throws IOException {
+        TypingSession.parse(new StringReader("abc\n"));
+    }
+
+    @Test
+    public void driver_replaysBackspacesAndReportsPercentiles() throws Exception {
+        final List<String> queries = new ArrayList<>();
+        final List<TypingSession> sessions = TypingSession.parse(new StringReader(
+                "0 c\n0 a\n0 x\n0 BACKSPACE\n0 t\n"));
+
+        final LatencyReport report = new LoadTestDriver(q -> {
+            queries.add(q);
+            return new ArrayList<>();
+        }, false).run(sessions);
+
+        assertEquals(Arrays.asList("c", "ca", "cax", "ca", "cat"), queries);
+        assertEquals(5, report.getCount());
+        assertTrue(report.getP50Nanos() <= report.getP99Nanos());
+        assertTrue(report.getP99Nanos() <= report.getP999Nanos());
+        assertTrue(report.getP999Nanos() <= report.getMaxNanos());
+    }
+
+    @Test
+    public void driver_runsAgainstSearchEngine() throws Exception {
+        final DictionaryGenerator generator = generator(50_000, 11);
+        final String[] words = generator.generate();
+        final SearchEngine engine = new SearchEngine();
+        engine.load(new ByteArrayInputStream(DictionaryGenerator.encode(words)));
+
+        final List<TypingSession> sessions = LoadTestDriver.synthesizeSessions(words, 200, 5, 150, 0.05);
+        final LatencyReport report = new LoadTestDriver(engine::query, false).run(sessions);
+
+        assertTrue(report.getCount() > 200);
+        assertTrue(report.getThroughput() > 0);
+    }
+
+}
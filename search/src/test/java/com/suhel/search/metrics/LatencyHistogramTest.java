@@ -0,0 +1,132 @@
+package com.suhel.search.metrics;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithinPrecision() {
+        long previous = -1;
+
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            final long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(upper > previous);
+            assertEquals(bucket, LatencyHistogram.bucketOf(previous + 1));
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper));
+            previous = upper;
+        }
+
+        assertEquals(Long.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void percentiles_areWithinOneEighth() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+
+        final HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(10_000_000L, snapshot.getMaxNanos());
+        assertWithin(5_000_000L, snapshot.getPercentileNanos(50));
+        assertWithin(9_900_000L, snapshot.getPercentileNanos(99));
+        assertEquals(5_000_500L, snapshot.getMeanNanos());
+    }
+
+    @Test
+    public void record_isSafeAcrossThreads() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400_000, histogram.snapshot().getCount());
+        assertEquals(99_999, histogram.snapshot().getMaxNanos());
+    }
+
+    @Test
+    public void metrics_disabledRecordsNothing() {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final List<PipelineStage> recorded = new ArrayList<>();
+        metrics.setListener((stage, nanos) -> recorded.add(stage));
+
+        metrics.begin(PipelineStage.QUERY_EXECUTION);
+        metrics.end(PipelineStage.QUERY_EXECUTION);
+        metrics.record(PipelineStage.ADAPTER_BIND, 10);
+        metrics.recordSince(PipelineStage.ADAPTER_BIND, metrics.now());
+
+        assertEquals(0, metrics.now());
+        assertTrue(recorded.isEmpty());
+        assertEquals(0, metrics.snapshot(PipelineStage.ADAPTER_BIND).getCount());
+    }
+
+    @Test
+    public void metrics_beginKeepsFirstStartUntilEnd() {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final List<PipelineStage> recorded = new ArrayList<>();
+        metrics.setEnabled(true);
+        metrics.setListener((stage, nanos) -> recorded.add(stage));
+
+        metrics.beginIfIdle(PipelineStage.KEYSTROKE_TO_QUERY);
+        metrics.beginIfIdle(PipelineStage.KEYSTROKE_TO_QUERY);
+        metrics.end(PipelineStage.KEYSTROKE_TO_QUERY);
+        metrics.end(PipelineStage.KEYSTROKE_TO_QUERY);
+
+        assertEquals(1, recorded.size());
+        assertEquals(1, metrics.snapshot(PipelineStage.KEYSTROKE_TO_QUERY).getCount());
+
+        final StringWriter out = new StringWriter();
+        metrics.dump("", new PrintWriter(out));
+        assertTrue(out.toString().contains("KEYSTROKE_TO_QUERY: count=1"));
+    }
+
+    @Test
+    public void metrics_cancelDropsOpenStageSoNextBurstStartsAfresh() throws InterruptedException {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final List<Long> recorded = new ArrayList<>();
+        metrics.setEnabled(true);
+        metrics.setListener((stage, nanos) -> recorded.add(nanos));
+
+        metrics.beginIfIdle(PipelineStage.KEYSTROKE_TO_QUERY);
+        metrics.cancel(PipelineStage.KEYSTROKE_TO_QUERY);
+        metrics.end(PipelineStage.KEYSTROKE_TO_QUERY);
+        assertTrue(recorded.isEmpty());
+
+        Thread.sleep(20);
+        metrics.beginIfIdle(PipelineStage.KEYSTROKE_TO_QUERY);
+        metrics.end(PipelineStage.KEYSTROKE_TO_QUERY);
+
+        // Timed from the second keystroke, not the skipped one
+        assertEquals(1, recorded.size());
+        assertTrue(recorded.get(0) < TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected ~" + expected + " got " + actual,
+                Math.abs(actual - expected) <= expected / 8);
+    }
+
+}
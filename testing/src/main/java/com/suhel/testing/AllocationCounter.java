@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Suhel Chakraborty
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.suhel.testing;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes allocated by the current thread, on VMs which can. Shared by
+ * the allocation tests of every module
+ */
+public final class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean mBean;
+    private final long mThreadId;
+
+    private AllocationCounter(com.sun.management.ThreadMXBean bean) {
+        mBean = bean;
+        mThreadId = Thread.currentThread().getId();
+    }
+
+    /**
+     * @return A counter for the current thread, null if the VM cannot count its allocations
+     */
+    public static AllocationCounter forCurrentThread() {
+        final Object bean = ManagementFactory.getThreadMXBean();
+
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+
+        ((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+        return new AllocationCounter((com.sun.management.ThreadMXBean) bean);
+    }
+
+    /**
+     * @return Bytes allocated by the thread so far
+     */
+    public long allocatedBytes() {
+        return mBean.getThreadAllocatedBytes(mThreadId);
+    }
+
+}